@@ -6,12 +6,14 @@
  */
 
 import java.util.Map;
+import java.util.function.Function;
 import java.util.Set;
 import java.util.HashSet;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.BitSet;
 
 public class AndConstraint
    extends BooleanConstraint
@@ -29,10 +31,58 @@ public class AndConstraint
 
    public boolean check(Map<Variable, String> assignment)
    {
+      return evaluate(assignment) != Truth.UNSAT;
+   }
+
+   // the values that pass every part, filtering by each part in turn
+   public BitSet filter(Variable var, List<String> domain, BitSet values,
+         Map<Variable, String> assignment)
+   {
+      BitSet passing = values;
+      for (Constraint c : constraints)
+      {
+         if (passing.isEmpty())
+            break;
+         passing = c.filter(var, domain, passing, assignment);
+      }
+      return passing == values ? (BitSet) values.clone() : passing;
+   }
+
+   public Truth evaluate(Map<Variable, String> assignment)
+   {
+      return evaluate(assignment, c -> c.evaluate(assignment));
+   }
+
+   // unsatisfied as soon as any part is, satisfied once all parts are
+   public Truth evaluate(Map<Variable, String> assignment, Function<Constraint, Truth> leaves)
+   {
+      Truth result = Truth.SAT;
+      for (Constraint c : constraints)
+      {
+         final Truth t = c.evaluate(assignment, leaves);
+         if (t == Truth.UNSAT)
+            return Truth.UNSAT;
+         if (t == Truth.UNKNOWN)
+            result = Truth.UNKNOWN;
+      }
+      return result;
+   }
+
+   // every part is met, so every part's links count
+   public double score(Map<Variable, String> assignment)
+   {
+      double score = 0;
+      for (Constraint c : constraints)
+         score += c.score(assignment);
+      return score;
+   }
+
+   public double maxScore()
+   {
+      double max = 0;
       for (Constraint c : constraints)
-         if (!c.check(assignment))
-            return false;
-      return true;
+         max += c.maxScore();
+      return max;
    }
 
    public String howSatisfied(Variable var, Map<Variable, String> assignment)
@@ -0,0 +1,235 @@
+/**
+ * Compiles the boolean constraint trees of a SearchSpace into method
+ * handles, so that checking one is a single call over the search's value
+ * indices rather than a walk over the tree.
+ *
+ * Each AND, OR and NOT becomes a method handle combinator (short-circuiting
+ * like the constraint itself), which the JVM turns into bytecode of its
+ * own. Truth values are ints ordered so that AND is the minimum of its parts
+ * and OR the maximum. Leaves that can be looked up by value index are: a
+ * binary leaf with a compatibility matrix reads it, and a unary leaf reads a
+ * table of its results over its variable's domain, filled in once (see
+ * Constraint.filter()). Only the remaining leaves are checked against the
+ * assignment, sharing SearchSpace's cache of base results.
+ *
+ * @author Mark J. Nelson
+ * @date   2026
+ */
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.BitSet;
+import java.util.Collections;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+class CheckCompiler
+{
+   // truth values, ordered so that AND is min() and OR is max()
+   static final int UNSAT = 0, UNKNOWN = 1, SAT = 2;
+
+   private static final MethodHandle MIN, MAX, NOT, IS_UNSAT, IS_SAT,
+      MATRIX_LEAF, TABLE_LEAF, LEAF, TREE;
+
+   static
+   {
+      final MethodHandles.Lookup lookup = MethodHandles.lookup();
+      final MethodType binary = MethodType.methodType(int.class, int.class, int.class);
+      final MethodType unary = MethodType.methodType(int.class, int.class);
+      final MethodType test = MethodType.methodType(boolean.class, int.class);
+      final MethodType check = MethodType.methodType(int.class, int[].class, Map.class);
+      try
+      {
+         MIN = lookup.findStatic(Math.class, "min", binary);
+         MAX = lookup.findStatic(Math.class, "max", binary);
+         NOT = lookup.findStatic(CheckCompiler.class, "not", unary);
+         IS_UNSAT = lookup.findStatic(CheckCompiler.class, "isUnsat", test);
+         IS_SAT = lookup.findStatic(CheckCompiler.class, "isSat", test);
+         MATRIX_LEAF = lookup.findStatic(CheckCompiler.class, "matrixLeaf",
+               check.insertParameterTypes(0, CompatibilityMatrix.class, int.class, int.class));
+         TABLE_LEAF = lookup.findStatic(CheckCompiler.class, "tableLeaf",
+               check.insertParameterTypes(0, byte[].class, int.class));
+         LEAF = lookup.findVirtual(SearchSpace.class, "leafTruth",
+               check.insertParameterTypes(0, Constraint.class));
+         TREE = lookup.findVirtual(SearchSpace.class, "treeTruth",
+               check.insertParameterTypes(0, Constraint.class));
+      }
+      catch (ReflectiveOperationException e)
+      {
+         throw new ExceptionInInitializerError(e);
+      }
+   }
+
+   private final SearchSpace space;
+   private final Map<Constraint, CompatibilityMatrix> matrices;
+   // what's been compiled so far, so that trees sharing a subtree or leaf
+   // share its handle (and a unary leaf's table is only filled in once)
+   private final Map<Constraint, MethodHandle> compiled = new HashMap<>();
+
+   /**
+    * @param matrices Matrices for binary constraints, which may include
+    *                 leaves of the boolean ones; must be over the space's
+    *                 domains.
+    */
+   CheckCompiler(SearchSpace space, Map<Constraint, CompatibilityMatrix> matrices)
+   {
+      this.space = space;
+      this.matrices = matrices;
+   }
+
+   /**
+    * Compile a constraint into a handle taking the search's value indices
+    * (-1 for unassigned) and assignment, and returning UNSAT, UNKNOWN or
+    * SAT.
+    */
+   MethodHandle compile(Constraint c)
+   {
+      MethodHandle h = compiled.get(c);
+      if (h != null)
+         return h;
+      if (c instanceof AndConstraint)
+         h = chain(((BooleanConstraint) c).getConstraints(), IS_UNSAT, SAT, MIN);
+      else if (c instanceof OrConstraint)
+         h = chain(((BooleanConstraint) c).getConstraints(), IS_SAT, UNSAT, MAX);
+      else if (c instanceof NotConstraint)
+         h = MethodHandles.filterReturnValue(compile(((BooleanConstraint) c).getConstraints().get(0)), NOT);
+      else if (c instanceof BooleanConstraint)
+         // some other kind of tree, which only it knows how to combine
+         h = TREE.bindTo(space).bindTo(c);
+      else
+         h = leaf(c);
+      compiled.put(c, h);
+      return h;
+   }
+
+   /**
+    * Run a compiled check: whether it isn't unsatisfied.
+    */
+   static boolean passes(MethodHandle check, int[] valueIndices, Map<Variable, String> assignment)
+   {
+      try
+      {
+         return (int) check.invokeExact(valueIndices, assignment) != UNSAT;
+      }
+      catch (RuntimeException | Error e)
+      {
+         throw e;
+      }
+      catch (Throwable t)
+      {
+         // constraints don't throw checked exceptions
+         throw new IllegalStateException(t);
+      }
+   }
+
+   static int code(Truth truth)
+   {
+      switch (truth)
+      {
+         case SAT:
+            return SAT;
+         case UNSAT:
+            return UNSAT;
+         default:
+            return UNKNOWN;
+      }
+   }
+
+   // the parts evaluated left to right, stopping at the first that is
+   // decisive and otherwise combining their results, starting from empty
+   // (what no parts at all give)
+   private MethodHandle chain(List<Constraint> parts, MethodHandle decisive, int empty,
+         MethodHandle combine)
+   {
+      if (parts.isEmpty())
+         return MethodHandles.dropArguments(MethodHandles.constant(int.class, empty),
+                                            0, int[].class, Map.class);
+
+      // (t, valueIndices, assignment) -> t itself, or combined with the rest
+      final MethodHandle stop = MethodHandles.dropArguments(MethodHandles.identity(int.class),
+                                                            1, int[].class, Map.class);
+      MethodHandle rest = compile(parts.get(parts.size() - 1));
+      for (int k = parts.size() - 2; k >= 0; --k)
+      {
+         final MethodHandle step = MethodHandles.guardWithTest(decisive, stop,
+               MethodHandles.collectArguments(combine, 1, rest));
+         rest = MethodHandles.foldArguments(step, compile(parts.get(k)));
+      }
+      return rest;
+   }
+
+   private MethodHandle leaf(Constraint c)
+   {
+      final List<Variable> vars = new ArrayList<>(c.relevantVars());
+      final int[] ps = new int[vars.size()];
+      for (int i = 0; i < ps.length; ++i)
+      {
+         final Integer pos = space.positions.get(vars.get(i));
+         if (pos == null)
+            return LEAF.bindTo(space).bindTo(c);
+         ps[i] = pos;
+      }
+
+      final CompatibilityMatrix m = matrices.get(c);
+      if (m != null)
+      {
+         final int row = space.positions.get(m.getRowVariable());
+         final int col = space.positions.get(m.getColumnVariable());
+         return MethodHandles.insertArguments(MATRIX_LEAF, 0, m, row, col);
+      }
+
+      // a unary leaf's table is as big as the domain, so an ImplicitDomain
+      // is left to be checked as it goes
+      final List<String> domain = ps.length == 1 ? space.domains.get(ps[0]) : null;
+      if (domain != null && !(domain instanceof ImplicitDomain))
+      {
+         final BitSet all = new BitSet();
+         all.set(0, domain.size());
+         final BitSet passing = c.filter(vars.get(0), domain, all,
+                                         Collections.<Variable, String>emptyMap());
+         final byte[] truths = new byte[domain.size()];
+         for (int v = 0; v < truths.length; ++v)
+            truths[v] = (byte) (passing.get(v) ? SAT : UNSAT);
+         return MethodHandles.insertArguments(TABLE_LEAF, 0, truths, ps[0]);
+      }
+
+      return LEAF.bindTo(space).bindTo(c);
+   }
+
+   private static int not(int truth)
+   {
+      return SAT - truth;
+   }
+
+   private static boolean isUnsat(int truth)
+   {
+      return truth == UNSAT;
+   }
+
+   private static boolean isSat(int truth)
+   {
+      return truth == SAT;
+   }
+
+   // like check(), a base constraint is undecided until all its variables
+   // are assigned
+   private static int matrixLeaf(CompatibilityMatrix m, int row, int col,
+         int[] valueIndices, Map<Variable, String> assignment)
+   {
+      final int r = valueIndices[row];
+      final int c = valueIndices[col];
+      if (r < 0 || c < 0)
+         return UNKNOWN;
+      return m.get(r, c) ? SAT : UNSAT;
+   }
+
+   private static int tableLeaf(byte[] truths, int pos, int[] valueIndices,
+         Map<Variable, String> assignment)
+   {
+      final int v = valueIndices[pos];
+      return v < 0 ? UNKNOWN : truths[v];
+   }
+}
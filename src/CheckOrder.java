@@ -0,0 +1,129 @@
+/**
+ * The order to run each variable's constraint checks in, tuned as a search
+ * goes by how expensive each check turns out to be and how often it fails.
+ *
+ * Checks are sorted by cost divided by failure rate, which for independent
+ * checks minimises the expected cost of finding out that an assignment
+ * fails: a cheap check that usually fails should run before an expensive one
+ * that usually passes, e.g. a WordNet lookup before a ConceptNet query with
+ * inheritance. The statistics decay each time the order is re-tuned, so it
+ * follows the search into parts of the space where different checks matter.
+ *
+ * Not thread-safe; SearchSpace keeps one per thread.
+ *
+ * @author Mark J. Nelson
+ * @date   2026
+ */
+
+class CheckOrder
+{
+   // re-tune a variable's order after this many rounds of checking it
+   private static final int RETUNE_INTERVAL = 256;
+   // only time one call in this many, since timing isn't free
+   private static final int TIMING_INTERVAL = 8;
+
+   // per variable position: the current order (indices into
+   // SearchSpace.checks[pos]), or null if there's nothing to order
+   private final int[][] order;
+   // rounds of checking since the last re-tune
+   private final int[] rounds;
+   // per check: calls, failures, and the calls timed and their total time
+   private final int[][] calls, fails, timed;
+   private final long[][] nanos;
+
+   CheckOrder(Constraint[][] checks)
+   {
+      final int n = checks.length;
+      order = new int[n][];
+      rounds = new int[n];
+      calls = new int[n][];
+      fails = new int[n][];
+      timed = new int[n][];
+      nanos = new long[n][];
+      for (int pos = 0; pos < n; ++pos)
+      {
+         final int k = checks[pos].length;
+         if (k < 2)
+            continue;
+         order[pos] = new int[k];
+         for (int i = 0; i < k; ++i)
+            order[pos][i] = i;
+         calls[pos] = new int[k];
+         fails[pos] = new int[k];
+         timed[pos] = new int[k];
+         nanos[pos] = new long[k];
+      }
+   }
+
+   /**
+    * The order to run the checks for a position in, or null to just run
+    * them in their given order. Counts as a round of checking it.
+    */
+   int[] order(int pos)
+   {
+      if (order[pos] != null && ++rounds[pos] >= RETUNE_INTERVAL)
+         retune(pos);
+      return order[pos];
+   }
+
+   /**
+    * Whether to time the next call of a check.
+    */
+   boolean shouldTime(int pos, int i)
+   {
+      return calls[pos] != null && calls[pos][i] % TIMING_INTERVAL == 0;
+   }
+
+   /**
+    * Record the outcome of a check.
+    *
+    * @param elapsed How long it took in nanoseconds, or -1 if it wasn't timed.
+    */
+   void record(int pos, int i, boolean failed, long elapsed)
+   {
+      if (calls[pos] == null)
+         return;
+      ++calls[pos][i];
+      if (failed)
+         ++fails[pos][i];
+      if (elapsed >= 0)
+      {
+         ++timed[pos][i];
+         nanos[pos][i] += elapsed;
+      }
+   }
+
+   // sort a position's checks by expected cost per failure, then decay its
+   // statistics
+   private void retune(int pos)
+   {
+      rounds[pos] = 0;
+      final int[] o = order[pos];
+      final double[] score = new double[o.length];
+      for (int i = 0; i < o.length; ++i)
+      {
+         // smoothed, so unseen or never-failing checks still get a score
+         final double cost = (nanos[pos][i] + 1.0) / (timed[pos][i] + 1);
+         final double failRate = (fails[pos][i] + 1.0) / (calls[pos][i] + 2);
+         score[i] = cost / failRate;
+
+         calls[pos][i] >>= 1;
+         fails[pos][i] >>= 1;
+         timed[pos][i] >>= 1;
+         nanos[pos][i] >>= 1;
+      }
+
+      // insertion sort: there are only ever a few checks per variable
+      for (int a = 1; a < o.length; ++a)
+      {
+         final int check = o[a];
+         int b = a - 1;
+         while (b >= 0 && score[o[b]] > score[check])
+         {
+            o[b + 1] = o[b];
+            --b;
+         }
+         o[b + 1] = check;
+      }
+   }
+}
@@ -0,0 +1,222 @@
+/**
+ * A precomputed table of which value pairs satisfy a binary constraint.
+ *
+ * Rows are indexed by the position of a value in the first variable's domain,
+ * and columns by the position of a value in the second variable's domain.
+ * The table is filled in once (in parallel, if given a pool to fill it on),
+ * so that the search can replace repeated ConceptNet/WordNet lookups with
+ * bit tests.
+ *
+ * @author Mark J. Nelson
+ * @date   2026
+ */
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class CompatibilityMatrix
+{
+   // rows per leaf task when filling in the matrix
+   private static final int ROWS_PER_TASK = 8;
+
+   private final Constraint constraint;
+   private final Variable rowVar, colVar;
+   private final int rows, cols;
+   // each row starts on a fresh word, so parallel tasks never share one
+   private final int wordsPerRow;
+   private final long[] bits;
+   // copies of the domains the matrix was computed over, since the lists
+   // it's given may be changed in place later
+   private final List<String> rowValues, colValues;
+   // the number of compatible values in the other domain, per row and column
+   private final int[] rowSupport, colSupport;
+   // the run the matrix is filled in for, or null; and whether every row
+   // was filled in before its budget ran out
+   private final SearchBudget budget;
+   private final boolean complete;
+
+   /**
+    * Evaluate a binary constraint over the cross product of two domains, on
+    * the calling thread.
+    *
+    * The constraint is checked on assignments containing only the two
+    * variables, so it should not depend on any others.
+    */
+   public CompatibilityMatrix(Constraint constraint,
+         Variable rowVar, List<String> rowValues,
+         Variable colVar, List<String> colValues)
+   {
+      this(constraint, rowVar, rowValues, colVar, colValues, null, null);
+   }
+
+   /**
+    * As above, but fill in the rows in parallel on a pool (if not null),
+    * and stop once a run's budget (if not null) runs out, leaving the matrix
+    * incomplete.
+    *
+    * @throws IllegalArgumentException If the domains are too big for the
+    *                                  matrix to fit in one array (see
+    *                                  fits()).
+    */
+   CompatibilityMatrix(Constraint constraint,
+         Variable rowVar, List<String> rowValues,
+         Variable colVar, List<String> colValues, SearchBudget budget,
+         ForkJoinPool pool)
+   {
+      this.constraint = constraint;
+      this.rowVar = rowVar;
+      this.colVar = colVar;
+      if (!fits(rowValues.size(), colValues.size()))
+         throw new IllegalArgumentException("Domains too big for a compatibility matrix: "
+            + rowValues.size() + " by " + colValues.size());
+      rows = rowValues.size();
+      cols = colValues.size();
+      wordsPerRow = (cols + 63) >>> 6;
+      bits = new long[(int) (sizeInBits(rows, cols) >>> 6)];
+
+      this.rowValues = new ArrayList<>(rowValues);
+      this.colValues = new ArrayList<>(colValues);
+      this.budget = budget;
+
+      if (pool != null)
+         pool.invoke(new FillTask(0, rows));
+      else
+         fill(0, rows);
+      complete = budget == null || !budget.stopped();
+
+      rowSupport = new int[rows];
+      colSupport = new int[cols];
+      for (int row = 0; row < rows; ++row)
+         for (int col = 0; col < cols; ++col)
+            if (get(row, col))
+            {
+               ++rowSupport[row];
+               ++colSupport[col];
+            }
+   }
+
+   /**
+    * The number of bits a matrix over domains of the given sizes needs.
+    */
+   public static long sizeInBits(int rows, int cols)
+   {
+      return (long) rows * (((long) cols + 63) & ~63L);
+   }
+
+   /**
+    * Whether a matrix over domains of the given sizes fits in one array, so
+    * that every word of it can be indexed with an int.
+    */
+   public static boolean fits(int rows, int cols)
+   {
+      return sizeInBits(rows, cols) >>> 6 <= Integer.MAX_VALUE;
+   }
+
+   /**
+    * Whether the value pair (rowValues[row], colValues[col]) satisfies the
+    * constraint.
+    */
+   public boolean get(int row, int col)
+   {
+      return (bits[row * wordsPerRow + (col >>> 6)] & (1L << col)) != 0;
+   }
+
+   /**
+    * Whether every row was filled in; only a matrix built with a budget
+    * can be incomplete, and it shouldn't be used.
+    */
+   boolean isComplete()
+   {
+      return complete;
+   }
+
+   /**
+    * Whether the matrix was computed over these domains.
+    */
+   public boolean isOver(List<String> rowValues, List<String> colValues)
+   {
+      return this.rowValues.equals(rowValues) && this.colValues.equals(colValues);
+   }
+
+   /**
+    * The number of values in the column variable's domain compatible with
+    * rowValues[row].
+    */
+   public int rowSupport(int row)
+   {
+      return rowSupport[row];
+   }
+
+   /**
+    * The number of values in the row variable's domain compatible with
+    * colValues[col].
+    */
+   public int columnSupport(int col)
+   {
+      return colSupport[col];
+   }
+
+   public Constraint getConstraint()
+   {
+      return constraint;
+   }
+
+   public Variable getRowVariable()
+   {
+      return rowVar;
+   }
+
+   public Variable getColumnVariable()
+   {
+      return colVar;
+   }
+
+   // fill in a range of rows, a row at a time, filtering all the columns at
+   // once
+   private void fill(int from, int to)
+   {
+      final Map<Variable, String> assignment = new HashMap<>();
+      final BitSet allCols = new BitSet();
+      allCols.set(0, cols);
+      for (int row = from; row < to; ++row)
+      {
+         if (budget != null && !budget.check())
+            return;
+         assignment.put(rowVar, rowValues.get(row));
+         final long[] rowBits =
+            constraint.filter(colVar, colValues, allCols, assignment).toLongArray();
+         System.arraycopy(rowBits, 0, bits, row * wordsPerRow, rowBits.length);
+      }
+   }
+
+   // fill in a range of rows, splitting it up until it's small enough
+   private class FillTask
+      extends RecursiveAction
+   {
+      private static final long serialVersionUID = 1L;
+
+      private final int from, to;
+
+      FillTask(int from, int to)
+      {
+         this.from = from;
+         this.to = to;
+      }
+
+      protected void compute()
+      {
+         if (to - from > ROWS_PER_TASK)
+         {
+            final int mid = (from + to) >>> 1;
+            invokeAll(new FillTask(from, mid), new FillTask(mid, to));
+            return;
+         }
+         fill(from, to);
+      }
+   }
+}
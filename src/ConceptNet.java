@@ -40,12 +40,21 @@ public class ConceptNet
       public String type;
       public String source;
       public String target;
+      // the assertion's frequency score ("f=" in the data files), which is
+      // higher for more commonly stated links
+      public short score;
       
       public Relation(String type_, String source_, String target_)
+      {
+         this(type_, source_, target_, (short) 0);
+      }
+
+      public Relation(String type_, String source_, String target_, short score_)
       {
          type = type_;
          source = source_;
          target = target_;
+         score = score_;
       }
 
       public String toString()
@@ -57,6 +66,11 @@ public class ConceptNet
    /* The relations, indexed by source and target */
    private Map<String, List<Relation>> outgoing = new HashMap<>();
    private Map<String, List<Relation>> incoming = new HashMap<>();
+   /* The same relations, also partitioned by type */
+   private Map<String, Map<String, List<Relation>>> outgoingByType = new HashMap<>();
+   private Map<String, Map<String, List<Relation>>> incomingByType = new HashMap<>();
+   /* The highest score of any relation, per type */
+   private Map<String, Short> maxScores = new HashMap<>();
    
    public ConceptNet()
       throws IOException
@@ -66,9 +80,9 @@ public class ConceptNet
       Function<String,String> intern = s -> seenStrings.computeIfAbsent(s, Function.identity());
 
       /* Match against this pattern, made unreadable due to escaping:
-       *    ^\((\S+) "(.*)" "(.*)" ".*")$
+       *    ^\((\S+) "(.*)" "(.*)" "(.*)")$
        */
-      Pattern regex = Pattern.compile("^\\((\\S+) \"(.*)\" \"(.*)\" \".*\"\\)$");
+      Pattern regex = Pattern.compile("^\\((\\S+) \"(.*)\" \"(.*)\" \"(.*)\"\\)$");
       for (String filename : FILENAMES)
       {
 	 BufferedReader file = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(filename))));
@@ -79,11 +93,38 @@ public class ConceptNet
             boolean b = m.matches();
             assert b;
 
-            Relation r = new Relation(intern.apply(m.group(1)), intern.apply(m.group(2)), intern.apply(m.group(3)));
+            Relation r = new Relation(intern.apply(m.group(1)), intern.apply(m.group(2)), intern.apply(m.group(3)),
+                                      parseScore(m.group(4)));
+            maxScores.merge(r.type, r.score, (s1, s2) -> s1 >= s2 ? s1 : s2);
             outgoing.computeIfAbsent(r.source, k -> new ArrayList<Relation>(1)).add(r);
             incoming.computeIfAbsent(r.target, k -> new ArrayList<Relation>(1)).add(r);
+            outgoingByType.computeIfAbsent(r.type, k -> new HashMap<>())
+               .computeIfAbsent(r.source, k -> new ArrayList<Relation>(1)).add(r);
+            incomingByType.computeIfAbsent(r.type, k -> new HashMap<>())
+               .computeIfAbsent(r.target, k -> new ArrayList<Relation>(1)).add(r);
+         }
+      }
+   }
+
+   /* Get the frequency from a "f=6;i=0;" field, clamped to fit a short; 0 if
+    * there isn't one */
+   private static short parseScore(String field)
+   {
+      for (String part : field.split(";"))
+      {
+         if (!part.startsWith("f="))
+            continue;
+         try
+         {
+            final int f = Integer.parseInt(part.substring(2));
+            return (short) Math.max(0, Math.min(Short.MAX_VALUE, f));
+         }
+         catch (NumberFormatException e)
+         {
+            return 0;
          }
       }
+      return 0;
    }
 
    /**
@@ -102,6 +143,36 @@ public class ConceptNet
       return Collections.unmodifiableList(incoming.getOrDefault(node, new ArrayList<Relation>()));
    }
 
+   /**
+     * Return every node with at least one relation, in no particular order.
+     */
+   public Set<String> getNodes()
+   {
+      Set<String> nodes = new HashSet<>(outgoing.keySet());
+      nodes.addAll(incoming.keySet());
+      return nodes;
+   }
+
+   /**
+     * Return a list of the relations of one type going out of a node.
+     */
+   public List<Relation> getOutgoing(String node, String type)
+   {
+      return Collections.unmodifiableList(
+            outgoingByType.getOrDefault(type, Collections.emptyMap())
+               .getOrDefault(node, Collections.emptyList()));
+   }
+
+   /**
+     * Return a list of the relations of one type coming into a node.
+     */
+   public List<Relation> getIncoming(String node, String type)
+   {
+      return Collections.unmodifiableList(
+            incomingByType.getOrDefault(type, Collections.emptyMap())
+               .getOrDefault(node, Collections.emptyList()));
+   }
+
    /**
      * Find a shortest path between two nodes, following edges forwards or backwards.
      *
@@ -292,8 +363,8 @@ public class ConceptNet
     */
    public boolean linkExists(String type, String source, String target)
    {
-      return getOutgoing(source).stream()
-         .anyMatch(r -> r.type.equals(type) && r.target.equals(target));
+      return getOutgoing(source, type).stream()
+         .anyMatch(r -> r.target.equals(target));
    }
    
    public boolean linkExists(String type, String source, String target,
@@ -302,6 +373,59 @@ public class ConceptNet
       return linkExists(type, source, target, inheritance, null);
    }
 
+   /**
+    * The score of a specific link, or -1 if it doesn't exist.
+    */
+   public int linkScore(String type, String source, String target)
+   {
+      int score = -1;
+      for (Relation r : getOutgoing(source, type))
+         if (r.target.equals(target))
+            score = Math.max(score, r.score);
+      return score;
+   }
+
+   /**
+    * The score of the link that linkExists() (with the same inheritance)
+    * finds, or -1 if it finds none.
+    */
+   public int linkScore(String type, String source, String target,
+         boolean[] inheritance)
+   {
+      final int[] score = new int[] { -1 };
+      linkExists(type, source, target, inheritance, null, score);
+      return score[0];
+   }
+
+   /**
+    * The number of links into or out of a node.
+    */
+   public int degree(String node)
+   {
+      return getOutgoing(node).size() + getIncoming(node).size();
+   }
+
+   /**
+    * The sum of the scores of the links into or out of a node.
+    */
+   public long totalScore(String node)
+   {
+      long total = 0;
+      for (Relation r : getOutgoing(node))
+         total += r.score;
+      for (Relation r : getIncoming(node))
+         total += r.score;
+      return total;
+   }
+
+   /**
+    * The highest score of any link of a type, or 0 if there are none.
+    */
+   public int maxScore(String type)
+   {
+      return maxScores.getOrDefault(type, (short) 0);
+   }
+
    /**
      * Check whether a specific link exists, optionally with WordNet "inheritance".
      *
@@ -323,11 +447,20 @@ public class ConceptNet
      */
    public boolean linkExists(String type, String source, String target,
          boolean[] inheritance, String trace[])
+   {
+      return linkExists(type, source, target, inheritance, trace, null);
+   }
+
+   // as above, also putting the found link's score in score[0] if score != null
+   private boolean linkExists(String type, String source, String target,
+         boolean[] inheritance, String trace[], int score[])
    {
       if (linkExists(type, source, target))
       {
          if (trace != null)
             trace[0] = source + " --(ConceptNet)--> " + target;
+         if (score != null)
+            score[0] = linkScore(type, source, target);
          return true;
       }
 
@@ -368,6 +501,8 @@ public class ConceptNet
                      + (target.equals(t)
                         ? target
                         : target + " --(WordNet)--> " + t);
+               if (score != null)
+                  score[0] = linkScore(type, s, t);
 
                return true;
             }
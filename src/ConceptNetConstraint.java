@@ -11,6 +11,11 @@
 import java.util.Map;
 import java.util.Set;
 import java.util.HashSet;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.BitSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class ConceptNetConstraint
    extends Constraint
@@ -21,6 +26,11 @@ public class ConceptNetConstraint
    private boolean[] inheritance = new boolean[4];
 
    private ConceptNet conceptNet = GlobalData.getInstance().conceptNet;
+   private WordNet wordNet = GlobalData.getInstance().wordNet;
+
+   // candidates already looked up, by the value at the other end
+   private Map<String, Set<String>> sourceCandidates = new ConcurrentHashMap<>();
+   private Map<String, Set<String>> targetCandidates = new ConcurrentHashMap<>();
 
    private Set<Variable> relVars = new HashSet<>();
 
@@ -89,6 +99,117 @@ public class ConceptNetConstraint
       return conceptNet.linkExists(type, sourceString, targetString, inheritance);
    }
 
+   // the nodes linked to the known end, expanded by WordNet inheritance on
+   // the known end. Inheritance on the unknown end would have to be
+   // inverted, which WordNet's sense-by-sense hypernyms don't allow exactly,
+   // so then there are no candidates (every value is tested as usual).
+   public Collection<String> candidates(Variable var, Map<Variable, String> assignment)
+   {
+      if (source == target)
+         return null;
+      if (var == target)
+      {
+         final String sourceString = source == null ? sourceLiteral : assignment.get(source);
+         if (sourceString == null || inheritance[2] || inheritance[3])
+            return null;
+         return targetCandidates.computeIfAbsent(sourceString, s -> {
+            final Set<String> targets = new HashSet<>();
+            for (String equiv : equivalents(s, inheritance[0], inheritance[1]))
+               for (ConceptNet.Relation r : conceptNet.getOutgoing(equiv, type))
+                  targets.add(r.target);
+            return targets;
+         });
+      }
+      if (var == source)
+      {
+         final String targetString = target == null ? targetLiteral : assignment.get(target);
+         if (targetString == null || inheritance[0] || inheritance[1])
+            return null;
+         return sourceCandidates.computeIfAbsent(targetString, t -> {
+            final Set<String> sources = new HashSet<>();
+            for (String equiv : equivalents(t, inheritance[2], inheritance[3]))
+               for (ConceptNet.Relation r : conceptNet.getIncoming(equiv, type))
+                  sources.add(r.source);
+            return sources;
+         });
+      }
+      return null;
+   }
+
+   // one sweep over the known end's links, marking the values they reach;
+   // only those are then checked, and only if inheritance might make the
+   // links overshoot (see candidates())
+   public BitSet filter(Variable var, List<String> domain, BitSet values,
+         Map<Variable, String> assignment)
+   {
+      // var's value can't matter, but the rest of the assignment might
+      // already fail the constraint
+      if (var != source && var != target)
+         return super.filter(var, domain, values, assignment);
+      final Collection<String> linked = candidates(var, assignment);
+      if (linked == null)
+      {
+         // with the other end unassigned, everything passes for now
+         final Variable other = var == source ? target : source;
+         if (other != null && other != var && !assignment.containsKey(other))
+            return (BitSet) values.clone();
+         return super.filter(var, domain, values, assignment);
+      }
+
+      // an ImplicitDomain can look the linked nodes up; other domains are
+      // swept, since the links are a hash set but a list's indexOf() isn't
+      final BitSet hits = new BitSet();
+      if (domain instanceof ImplicitDomain)
+      {
+         for (String value : linked)
+         {
+            final int i = domain.indexOf(value);
+            if (i >= 0 && values.get(i))
+               hits.set(i);
+         }
+      }
+      else
+      {
+         for (int i = values.nextSetBit(0); i >= 0; i = values.nextSetBit(i + 1))
+            if (linked.contains(domain.get(i)))
+               hits.set(i);
+      }
+
+      if (inheritance[0] || inheritance[1] || inheritance[2] || inheritance[3])
+         return super.filter(var, domain, hits, assignment);
+      return hits;
+   }
+
+   // a term, plus its hypernyms and/or hyponyms if it's a noun in WordNet
+   private List<String> equivalents(String term, boolean hypernyms, boolean hyponyms)
+   {
+      final List<String> equivalents = new ArrayList<>();
+      equivalents.add(term);
+      if ((hypernyms || hyponyms) && wordNet.isWord(WordNet.NOUN, term))
+      {
+         if (hypernyms)
+            equivalents.addAll(wordNet.getHypernyms(WordNet.NOUN, term));
+         if (hyponyms)
+            equivalents.addAll(wordNet.getHyponyms(WordNet.NOUN, term));
+      }
+      return equivalents;
+   }
+
+   // the strength of the link that satisfies it
+   public double score(Map<Variable, String> assignment)
+   {
+      final String sourceString = source == null ? sourceLiteral : assignment.get(source);
+      final String targetString = target == null ? targetLiteral : assignment.get(target);
+      if (sourceString == null || targetString == null)
+         return 0;
+      return Math.max(0, conceptNet.linkScore(type, sourceString, targetString, inheritance));
+   }
+
+   public double maxScore()
+   {
+      return conceptNet.maxScore(type);
+   }
+
    public String howSatisfied(Variable var, Map<Variable, String> assignment)
    {
       final String sourceString = source == null ? sourceLiteral : assignment.get(source);
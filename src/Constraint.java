@@ -6,7 +6,12 @@
  */
 
 import java.util.Map;
+import java.util.HashMap;
+import java.util.List;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.Set;
+import java.util.function.Function;
 
 public abstract class Constraint
 {
@@ -41,9 +46,115 @@ public abstract class Constraint
     * assignment so far. Return true otherwise, i.e. either when the constraint
     * is definitely satisfied, or when it might or might not be depending on
     * the values assigned to some of the variables not yet in the assignment.
+    *
+    * It may be called from several threads at once (by a parallel
+    * generate(), or while compatibility matrices are filled in), so it must
+    * be thread-safe, as must any knowledge base it looks things up in (see
+    * WordNet).
     */
    public abstract boolean check(Map<Variable, String> assignment);
 
+   /**
+    * Given a (possibly partial) variable assignment, evaluate this constraint
+    * to one of three values: SAT if it's definitely satisfied, UNSAT if it's
+    * definitely not, and UNKNOWN if that depends on variables that haven't
+    * been assigned yet.
+    *
+    * The default implementation is in terms of check(), which is enough for
+    * constraints that are decided once all their relevant variables are
+    * assigned. Constraints built on top of other constraints need to override
+    * it, since negating or combining check()'s "might be satisfied" isn't
+    * sound.
+    */
+   public Truth evaluate(Map<Variable, String> assignment)
+   {
+      if (!check(assignment))
+         return Truth.UNSAT;
+      for (Variable var : relevantVars())
+         if (!assignment.containsKey(var))
+            return Truth.UNKNOWN;
+      return Truth.SAT;
+   }
+
+   /**
+    * Evaluate this constraint, getting the results of the base (non-boolean)
+    * constraints it's built from through a function, e.g. one that caches
+    * them.
+    *
+    * Base constraints just return leaves.apply(this); boolean constraints
+    * combine their parts' results.
+    */
+   public Truth evaluate(Map<Variable, String> assignment, Function<Constraint, Truth> leaves)
+   {
+      return leaves.apply(this);
+   }
+
+   /**
+    * Given an assignment to all of this constraint's other variables, list
+    * the values of var that might satisfy it, when the constraint can look
+    * them up directly (e.g. by following knowledge-base links) rather than
+    * testing every value in var's domain.
+    *
+    * The result may include values that don't satisfy the constraint, or
+    * aren't in var's domain, but must not leave out any that do.
+    *
+    * @return The candidates, or null if the constraint can't list them (the
+    *         default), in which case every value has to be tested.
+    */
+   public Collection<String> candidates(Variable var, Map<Variable, String> assignment)
+   {
+      return null;
+   }
+
+   /**
+    * Test many values of a variable at once: of the values of var at the
+    * given indices of its domain, return those for which check() passes
+    * given the rest of the assignment.
+    *
+    * The default sets var to each value in turn and calls check().
+    * Constraints that can find the passing values in one go (e.g. by
+    * marking the nodes a knowledge-base node links to) override it.
+    *
+    * @param domain     var's domain.
+    * @param values     The indices in domain of the values to test.
+    * @param assignment The other variables' values; var's own is ignored.
+    * @return The indices of the values that pass, a subset of values.
+    */
+   public BitSet filter(Variable var, List<String> domain, BitSet values,
+         Map<Variable, String> assignment)
+   {
+      final Map<Variable, String> a = new HashMap<>(assignment);
+      final BitSet passing = new BitSet();
+      for (int i = values.nextSetBit(0); i >= 0; i = values.nextSetBit(i + 1))
+      {
+         a.put(var, domain.get(i));
+         if (check(a))
+            passing.set(i);
+      }
+      return passing;
+   }
+
+   /**
+    * Given a complete assignment that satisfies this constraint, return how
+    * strongly it does so, e.g. the strength of the knowledge-base links it
+    * relies on; higher is more typical.
+    *
+    * The default is 0, for constraints that are simply met or not.
+    */
+   public double score(Map<Variable, String> assignment)
+   {
+      return 0;
+   }
+
+   /**
+    * An upper bound on score() over all assignments, used to prune when
+    * looking for the highest-scoring assignments.
+    */
+   public double maxScore()
+   {
+      return 0;
+   }
+
    /**
     * Return a string explaining (through a trace of relevant values) how a
     * particular variable's assignment satisfies this constraint, possibly 
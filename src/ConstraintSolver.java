@@ -25,6 +25,12 @@ import java.io.FileWriter;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.regex.Pattern;
 
 public class ConstraintSolver
 {
@@ -35,6 +41,12 @@ public class ConstraintSolver
 
    // default possible values per type
    private Map<String, List<String>> defaultValues = new HashMap<>();
+   // a constraint weight line in a specification file, as opposed to a
+   // variable of a type called 'weight'
+   private static final Pattern WEIGHT_LINE = Pattern.compile("weight \\d+: .*");
+
+   // the weights of constraints whose weight isn't 1; see setWeight()
+   private final Map<Constraint, Double> weights = new HashMap<>();
 
    // mapping of constraints that are subsumed by other (boolean) constraints
    // to a set of the constraints they're currently subsumed by
@@ -53,14 +65,76 @@ public class ConstraintSolver
    // gets assigned this ID
    private int constraintIdCounter = 0;
 
-   // internal state during a generation run:
-   
-   // the variable assignment
-   private Map<Variable, String> assignment = new HashMap<>();
-   // the set of assignments
-   private List<Map<Variable, String>> assignments = new ArrayList<>();
-   // the number of assignments
-   private int assignmentCounter = 0;
+   // whether to precompute compatibility matrices for binary constraints, and
+   // the most memory (in bytes) to spend on them per generation run
+   private boolean precomputeMatrices = false;
+   private long matrixMemoryLimit = 64L * 1024 * 1024;
+
+   // worker threads for generate() (1 for a sequential search), and whether
+   // they must return solutions in sequential order
+   private int parallelism = 1;
+   private boolean deterministicOrder = false;
+
+   // solve by tree decomposition when its width is at most this (-1 to never)
+   private int maxTreeWidth = -1;
+
+   // whether the search does conflict-directed backjumping
+   private boolean backjumping = false;
+
+   // whether the search reorders each variable's checks by measured cost
+   // and failure rate
+   private boolean adaptiveCheckOrder = false;
+
+   // the order to try each variable's values in
+   private ValueOrdering valueOrdering = ValueOrdering.DOMAIN_ORDER;
+
+   // whether the search restarts with randomised value orders, whether the
+   // restarts share learned nogoods, and the seed for the randomisation
+   private boolean restarts = false;
+   private boolean restartNogoods = true;
+   private long restartSeed = 0;
+
+   // whether searches take candidate values from the constraints (e.g.
+   // ConceptNet links) instead of trying every value in the domain
+   private boolean candidateGeneration = false;
+   // whether to evaluate the spec as a join plan; see setJoinPlan()
+   private boolean joinPlan = false;
+   // whether to compile the boolean constraints; see setCompiledChecks()
+   private boolean compiledChecks = false;
+
+   // whether to search by local search instead, and its step limit and seed
+   private boolean localSearch = false;
+   private long localSearchSteps = 0;
+   private long localSearchSeed = 0;
+
+   // pruned domains, matrices, and constraint results kept between runs
+   private final SolveCache cache = new SolveCache();
+
+   // domains narrowed by restrict() or fix(), which take the place of the
+   // variables' own
+   private Map<Variable, List<String>> restrictedDomains = new HashMap<>();
+   // the assumption frames opened by push(), innermost last
+   private List<Frame> frames = new ArrayList<>();
+
+   // what to undo when an assumption frame is popped
+   private static class Frame
+   {
+      // constraints added since the push, in order
+      final List<Constraint> added = new ArrayList<>();
+      // the restricted domains and constraint weights at the time of the
+      // push
+      final Map<Variable, List<String>> restrictedDomains;
+      final Map<Constraint, Double> weights;
+      final SolveCache.Snapshot cached;
+
+      Frame(Map<Variable, List<String>> restrictedDomains, Map<Constraint, Double> weights,
+            SolveCache.Snapshot cached)
+      {
+         this.restrictedDomains = new HashMap<>(restrictedDomains);
+         this.weights = new HashMap<>(weights);
+         this.cached = cached;
+      }
+   }
 
    public ConstraintSolver()
    {
@@ -100,10 +174,16 @@ public class ConstraintSolver
     *    defaultVals type: val1, val2, val3
     *    type varWithDefaultPossibleValues
     *    type varWithExplicitList: val1, val2, val3
+    *    type varWithImplicitDomain: noun:*
     *    constraint id: (ConstraintType arg1 arg2 "quoted arg3" ...)
-    * Variables must be declared before any constraints that reference them.
+    *    weight id: 2.5
+    * Variables must be declared before any constraints that reference them,
+    * and constraints before their weights (see setWeight()).
     * Anything starting a line other than the words 'defaultVals' or
-    * 'constraint' is a type for a variable declaration.
+    * 'constraint' is a type for a variable declaration, and so is 'weight'
+    * unless it's followed by a constraint id and a colon. A value list that
+    * is just an implicit-domain spec (see ImplicitDomain) stands for that
+    * domain, for default values too.
     */
    public ConstraintSolver(String filename)
       throws IOException
@@ -119,8 +199,7 @@ public class ConstraintSolver
             int nextPos = s.indexOf(':', pos);
             final String type = s.substring(pos, nextPos);
             pos = nextPos+2;
-            final String[] values = s.substring(pos).split(", ?", 0);
-            setDefaultValues(type, Arrays.asList(values));
+            setDefaultValues(type, parseValues(s.substring(pos)));
          }
          else if (s.startsWith("constraint "))
          {
@@ -131,6 +210,13 @@ public class ConstraintSolver
             final Constraint constraint = ConstraintFactory.parseConstraint(s.substring(pos), this);
             addConstraint(constraint, constraintId);
          }
+         else if (WEIGHT_LINE.matcher(s).matches())
+         {
+            int pos = 7;
+            int nextPos = s.indexOf(':', pos);
+            final int constraintId = Integer.valueOf(s.substring(pos, nextPos));
+            setWeight(getConstraint(constraintId), Double.valueOf(s.substring(nextPos + 2)));
+         }
          else if (s.indexOf(':') == -1) // variable with default values
          {
             int spacePos = s.indexOf(' ');
@@ -145,8 +231,7 @@ public class ConstraintSolver
             int colonPos = s.indexOf(':');
             final String type = s.substring(0, spacePos);
             final String name = s.substring(spacePos+1, colonPos);
-            final String[] values = s.substring(colonPos+2).split(", ?", 0);
-            final Variable var = new Variable(name, type, Arrays.asList(values));
+            final Variable var = new Variable(name, type, parseValues(s.substring(colonPos+2)));
             addVariable(var);
          }
       }
@@ -219,6 +304,14 @@ public class ConstraintSolver
          file.newLine();
       }
 
+      // output the weights that aren't the default
+      for (Constraint c : constraints)
+         if (weights.containsKey(c))
+         {
+            file.write("weight " + c.getID() + ": " + weights.get(c));
+            file.newLine();
+         }
+
       file.close();
    }
    // helper function to recursively output constraints subsumed by the specified constraint
@@ -298,8 +391,13 @@ public class ConstraintSolver
       final List<Constraint> removedConstraints = varsToConstraints.get(var);
       varsToConstraints.remove(var);
       for (Constraint removedConstraint : removedConstraints)
+      {
          constraints.remove(removedConstraint);
+         cache.forget(removedConstraint);
+      }
       namesToVars.remove(var.name);
+      restrictedDomains.remove(var);
+      cache.forget(var);
       return removedConstraints;
    }
 
@@ -320,6 +418,8 @@ public class ConstraintSolver
       idsToConstraints.put(constraintIdCounter, constraint);
       ++constraintIdCounter;
       subsumedConstraints.put(constraint, new HashSet<>());
+      if (!frames.isEmpty())
+         frames.get(frames.size() - 1).added.add(constraint);
       
       // remove constraints that have been subsumed by being part of a new
       // boolean constraint 
@@ -336,6 +436,7 @@ public class ConstraintSolver
             constraints.remove(sc);
          }
       }
+      invalidateUnary(constraint);
    }
    /**
     * Add a constraint with a specific ID.
@@ -353,6 +454,8 @@ public class ConstraintSolver
       if (id > constraintIdCounter)
          constraintIdCounter = id + 1;
       subsumedConstraints.put(constraint, new HashSet<>());
+      if (!frames.isEmpty())
+         frames.get(frames.size() - 1).added.add(constraint);
       
       // remove constraints that have been subsumed by being part of a new
       // boolean constraint 
@@ -369,6 +472,7 @@ public class ConstraintSolver
             constraints.remove(sc);
          }
       }
+      invalidateUnary(constraint);
    }
 
    /**
@@ -376,11 +480,17 @@ public class ConstraintSolver
     */
    public void removeConstraint(Constraint constraint)
    {
+      cache.forget(constraint);
+      invalidateUnary(constraint);
       constraints.remove(constraint);
       for (List<Constraint> cs : varsToConstraints.values())
          cs.remove(constraint);
       idsToConstraints.remove(constraint.getID());
       subsumedConstraints.remove(constraint);
+      weights.remove(constraint);
+      // it's gone already, so pop() mustn't remove it again
+      for (Frame frame : frames)
+         frame.added.remove(constraint);
       
       // re-add constraints that had been subsumed by the now-being-removed
       // boolean constraint if they aren't still subsumed by another
@@ -391,7 +501,11 @@ public class ConstraintSolver
          final List<Constraint> subConstraints = c.getConstraints();
          for (Constraint sc : subConstraints)
          {
+            // no entry means it isn't subsumed, e.g. it was re-added when
+            // another boolean constraint containing it was removed
             final Set<BooleanConstraint> subsumedBy = subsumedConstraints.get(sc);
+            if (subsumedBy == null)
+               continue;
             subsumedBy.remove(c);
             if (subsumedBy.isEmpty())
             {
@@ -410,11 +524,102 @@ public class ConstraintSolver
     *
     * Variables that don't have a list of possible values they can be assigned
     * set explicitly in their Variable() constructor will use this default list
-    * for their type.
+    * for their type. An ImplicitDomain is kept as it is rather than copied.
     */
    public void setDefaultValues(String type, Collection<String> values)
    {
-      defaultValues.put(type, new ArrayList<>(values));
+      defaultValues.put(type, values instanceof ImplicitDomain
+                              ? (ImplicitDomain) values : new ArrayList<>(values));
+      cache.forgetType(type);
+   }
+
+   /**
+    * Open a new frame of assumptions, for a what-if query.
+    *
+    * Constraints added, domains restricted or fixed, and weights set (see
+    * setWeight()) after a push() are undone by the matching pop(), which
+    * also puts back the pruned domains
+    * and matrices cached before the push, so the base problem doesn't have
+    * to be set up again. Frames nest. Removing variables or constraints
+    * isn't undone by pop().
+    */
+   public void push()
+   {
+      frames.add(new Frame(restrictedDomains, weights, cache.snapshot()));
+   }
+
+   /**
+    * Undo everything assumed since the matching push().
+    *
+    * @throws IllegalStateException If there is no frame to pop.
+    */
+   public void pop()
+   {
+      if (frames.isEmpty())
+         throw new IllegalStateException("pop() without a matching push()");
+      final Frame frame = frames.remove(frames.size() - 1);
+      for (int i = frame.added.size() - 1; i >= 0; --i)
+         removeConstraint(frame.added.get(i));
+      restrictedDomains = frame.restrictedDomains;
+      // a constraint removed since the push stays removed, weight and all
+      weights.clear();
+      for (Map.Entry<Constraint, Double> e : frame.weights.entrySet())
+         if (constraints.contains(e.getKey()))
+            weights.put(e.getKey(), e.getValue());
+      cache.restore(frame.cached);
+   }
+
+   /**
+    * The number of frames opened by push() and not yet popped.
+    */
+   public int depth()
+   {
+      return frames.size();
+   }
+
+   /**
+    * Narrow a variable's domain to the values it has in common with the
+    * given ones, until the current frame is popped (or for good, if no frame
+    * is open).
+    */
+   public void restrict(Variable var, Collection<String> values)
+   {
+      final List<String> current = getDomain(var);
+      if (current instanceof ImplicitDomain)
+      {
+         restrictedDomains.put(var, ((ImplicitDomain) current).retain(values));
+         return;
+      }
+
+      final Set<String> allowed = new HashSet<>(values);
+      final List<String> domain = new ArrayList<>();
+      for (String value : current)
+         if (allowed.contains(value))
+            domain.add(value);
+      restrictedDomains.put(var, domain);
+   }
+
+   /**
+    * Assume a variable takes a particular value, until the current frame is
+    * popped (or for good, if no frame is open).
+    *
+    * If the value isn't in the variable's domain, there are no solutions.
+    */
+   public void fix(Variable var, String value)
+   {
+      restrict(var, Collections.singletonList(value));
+   }
+
+   // drop the pruned domains that adding or removing a constraint affects:
+   // those of the variables of any unary constraint in it
+   private void invalidateUnary(Constraint constraint)
+   {
+      if (constraint.relevantVars().size() == 1)
+         for (Variable var : constraint.relevantVars())
+            cache.forget(var);
+      else if (constraint instanceof BooleanConstraint)
+         for (Constraint sc : ((BooleanConstraint) constraint).getConstraints())
+            invalidateUnary(sc);
    }
 
    /**
@@ -428,25 +633,522 @@ public class ConstraintSolver
       return Collections.unmodifiableList(defaultValues.getOrDefault(type, new ArrayList<String>()));
    }
 
+   /**
+    * Set whether generate() should precompute compatibility matrices.
+    *
+    * If enabled, each constraint between exactly two variables is evaluated
+    * up front over the cross product of their domains (in parallel), and the
+    * search then looks the results up instead of re-checking the constraint.
+    * This pays off when the same value pairs would otherwise be checked many
+    * times, as with two variables using large default domains.
+    */
+   public void setPrecomputeMatrices(boolean precompute)
+   {
+      precomputeMatrices = precompute;
+   }
+
+   /**
+    * Set the most memory, in bytes, that the compatibility matrices for one
+    * generation run can take up.
+    *
+    * Constraints whose matrix would go past the limit are checked lazily
+    * during the search, as if precomputation were off.
+    */
+   public void setMatrixMemoryLimit(long bytes)
+   {
+      matrixMemoryLimit = bytes;
+   }
+
+   /**
+    * Set the number of worker threads generate() searches with.
+    *
+    * With more than one, the search tree is split into subtrees on a
+    * fork-join pool (started for each run) as workers run out of work. The
+    * limit passed to generate() still applies to the total number of
+    * solutions. Compatibility matrices are filled in with this many threads
+    * too, and independent groups of variables look for their first
+    * solutions in parallel; with 1 (the default), everything runs on the
+    * calling thread.
+    *
+    * Only a plain backtracking search is split this way, and only when all
+    * the variables are connected by constraints. With local search,
+    * restarts, a join plan, tree decomposition, backjumping or candidate
+    * generation (so with any ImplicitDomain), or with independent groups of
+    * variables, generate() runs the sequential search instead, whatever this
+    * is set to.
+    */
+   public void setParallelism(int threads)
+   {
+      parallelism = threads;
+   }
+
+   /**
+    * Set whether a parallel generate() must return the same solutions, in
+    * the same order, every time: those of a sequential generate().
+    *
+    * Otherwise it returns whichever solutions the workers find first, which
+    * is faster when there are more solutions than the limit.
+    */
+   public void setDeterministicOrder(boolean deterministic)
+   {
+      deterministicOrder = deterministic;
+   }
+
+   /**
+    * Set the widest tree decomposition that solutions() (and so a sequential
+    * generate()) will solve by dynamic programming instead of search.
+    *
+    * When the constraint graph is a tree, or close to one, solving bag by
+    * bag over a tree decomposition never backtracks out of a dead end.
+    * However, the up-front work grows exponentially with the width, so
+    * graphs wider than this are searched as usual. The width of a tree of
+    * binary constraints is 1. Defaults to -1, i.e. always search.
+    */
+   public void setMaxTreeWidth(int width)
+   {
+      maxTreeWidth = width;
+   }
+
+   /**
+    * Set whether solutions() (and so a sequential generate()) searches with
+    * conflict-directed backjumping.
+    *
+    * When a variable runs out of values because of a conflict with a much
+    * earlier variable, backjumping returns straight to that variable instead
+    * of retrying every variable in between. Small failed combinations of
+    * values are also remembered, so the same doomed combination isn't
+    * re-checked on another branch.
+    */
+   public void setBackjumping(boolean backjumping)
+   {
+      this.backjumping = backjumping;
+   }
+
+   /**
+    * Set whether searches reorder each variable's constraint checks as they
+    * go, so that cheap checks that often fail run before expensive ones that
+    * rarely do. The order only affects speed, not the solutions found.
+    * Defaults to false.
+    */
+   public void setAdaptiveCheckOrder(boolean adaptive)
+   {
+      adaptiveCheckOrder = adaptive;
+   }
+
+   /**
+    * Set the order in which searches try each variable's values (see
+    * ValueOrdering). Good orders find the first solutions sooner; e.g.
+    * ValueOrdering.LEAST_CONSTRAINING, which is cheapest with precomputed
+    * matrices (otherwise it checks every pair of values once, keeping the
+    * counts between runs), or ValueOrdering.conceptNetDegree(). Defaults to
+    * the domains' own order.
+    */
+   public void setValueOrdering(ValueOrdering ordering)
+   {
+      valueOrdering = ordering;
+   }
+
+   /**
+    * Set whether solutions() (and so a sequential generate()) searches by
+    * randomised restarts.
+    *
+    * When some early values lead into huge dead subtrees, a single search
+    * can take minutes to find even one solution that a different order
+    * would find at once. With restarts, ties in the value order (see
+    * setValueOrdering()) are broken at random, and the search starts over
+    * with a new order after a growing number of steps (a Luby schedule),
+    * which keeps the time to the first solutions low and predictable. All
+    * solutions are still found, though in an order that depends on the seed.
+    *
+    * @param keepNogoods Whether failures learned by one restart are kept for
+    *                    the later ones.
+    * @param seed        The random seed.
+    */
+   public void setRestarts(boolean restarts, boolean keepNogoods, long seed)
+   {
+      this.restarts = restarts;
+      restartNogoods = keepNogoods;
+      restartSeed = seed;
+   }
+
+   /**
+    * Set whether solutions() (and so a sequential generate()) uses
+    * min-conflicts local search instead of complete search.
+    *
+    * Local search starts from random values for all the variables and
+    * repeatedly changes one involved in a violated constraint, so it can
+    * find assignments quickly in spaces far too big to search exhaustively,
+    * e.g. with large default domains. However, it can't prove there are no
+    * (more) assignments, so it gives up after a number of steps, and may
+    * miss some.
+    *
+    * @param maxSteps The most steps to take per generation run.
+    * @param seed     The random seed.
+    */
+   public void setLocalSearch(boolean localSearch, long maxSteps, long seed)
+   {
+      this.localSearch = localSearch;
+      localSearchSteps = maxSteps;
+      localSearchSeed = seed;
+   }
+
+   /**
+    * Set whether solutions() (and so a sequential generate()) takes a
+    * variable's candidate values from its constraints where it can, rather
+    * than trying every value in its domain.
+    *
+    * E.g. a variable with a ConceptNet constraint to a literal or an
+    * already-assigned variable only needs to try the nodes linked to that
+    * one (intersected with its domain), so the work depends on the number
+    * of links rather than the size of the domain. Worthwhile with large
+    * domains; see Constraint.candidates(). Always on when a variable has an
+    * ImplicitDomain, whatever this is set to.
+    */
+   public void setCandidateGeneration(boolean generate)
+   {
+      candidateGeneration = generate;
+   }
+
+   /**
+    * Set whether solutions() (and so a sequential generate()) evaluates the
+    * spec as a relational query rather than by backtracking search: each
+    * binary constraint's satisfying pairs are materialised once (looked up
+    * through the constraint's candidates where it can list them), pruned
+    * by semi-joins, and joined in a cost-based order (see JoinPlan).
+    *
+    * Worthwhile for specs with many binary ConceptNet links, where looking
+    * partners up in an index beats trying every value against them. The
+    * solutions are the same, in a different order. If the relations turn
+    * out too big to materialise (see JoinPlan.MAX_PAIRS), or a variable has
+    * an ImplicitDomain, the search falls back to backtracking.
+    */
+   public void setJoinPlan(boolean joinPlan)
+   {
+      this.joinPlan = joinPlan;
+   }
+
+   /**
+    * Set whether searches compile the boolean (AND/OR/NOT) constraints
+    * before they start.
+    *
+    * Each tree is turned into one method handle that the JVM compiles to
+    * bytecode, with its leaves read from tables by value index where they
+    * can be: unary leaves always, and binary leaves if matrices are
+    * precomputed (see setPrecomputeMatrices(), whose memory limit they then
+    * share). This saves walking the tree and looking values up by variable
+    * on every check, which pays off with large trees checked many times.
+    */
+   public void setCompiledChecks(boolean compiled)
+   {
+      compiledChecks = compiled;
+   }
+
    /**
     * Generate a list of assignments matching the constraints.
     *
     * A simple brute-force constraint solver, with minor optimizations to avoid
-    * re-testing constraints not affected by a particular variable's value.  An
-    * assignment consists of variable to value mappings.
+    * re-testing constraints not affected by a particular variable's value, and
+    * to solve groups of variables with no constraints between them
+    * independently.  An assignment consists of variable to value mappings.
     *
     * @param limit The maximum number of assignments to generate.
     */
    public List<Map<Variable, String>> generate(int limit)
    {
-      assignment.clear();
-      assignments.clear();
-      assignmentCounter = 0;
+      return new ArrayList<>(run(limit, null).getSolutions());
+   }
+
+   /**
+    * Generate a list of assignments matching the constraints, within the
+    * limits set by some options (see SolveOptions).
+    *
+    * The same search as generate(int), but if it runs out of time or nodes,
+    * or is cancelled, it stops and returns the assignments found so far,
+    * along with why it stopped.
+    *
+    * @param limit The maximum number of assignments to generate.
+    */
+   public SolveResult generate(int limit, SolveOptions options)
+   {
+      return run(limit, new SearchBudget(options));
+   }
+
+   // generate up to limit assignments, within a budget (if not null)
+   private SolveResult run(int limit, SearchBudget budget)
+   {
+      final SearchSpace space = newSearchSpace(budget);
+      if (space == null)
+         return budget.result(new ArrayList<>(), false);
+      final List<Map<Variable, String>> assignments;
+      if (searchesInParallel(space))
+      {
+         final ForkJoinPool pool = new ForkJoinPool(parallelism);
+         try
+         {
+            assignments = pool.invoke(new ParallelSearch(space, limit, deterministicOrder, budget));
+         }
+         finally
+         {
+            pool.shutdown();
+         }
+      }
+      else
+      {
+         assignments = new ArrayList<>();
+         final Iterator<Map<Variable, String>> it = solutions(space, budget);
+         while (assignments.size() < limit && it.hasNext())
+         {
+            assignments.add(it.next());
+            if (budget != null)
+               budget.solution();
+         }
+      }
+
+      final boolean limitReached = assignments.size() >= limit;
+      return budget != null
+         ? budget.result(assignments, limitReached)
+         : new SolveResult(assignments,
+                           limitReached ? SolveResult.Status.LIMIT : SolveResult.Status.COMPLETE,
+                           0);
+   }
+
+   /**
+    * Lazily enumerate the assignments matching the constraints.
+    *
+    * The same search as generate(), except that it only runs far enough to
+    * find each assignment as it's asked for, so the caller can start on the
+    * first one right away and stop whenever it likes. The variables and
+    * constraints are fixed when this is called; later changes to the solver
+    * aren't seen by the iterator.
+    */
+   public Iterator<Map<Variable, String>> solutions()
+   {
+      return solutions(newSearchSpace(), null);
+   }
+
+   /**
+    * Lazily enumerate the assignments matching the constraints, within the
+    * limits set by some options (see SolveOptions).
+    *
+    * The same as solutions(), except that the iterator runs out early if
+    * the limits are reached or the run is cancelled, including while the
+    * search is being set up; options.getStopReason() then says why.
+    */
+   public Iterator<Map<Variable, String>> solutions(SolveOptions options)
+   {
+      final SearchBudget budget = new SearchBudget(options);
+      final SearchSpace space = newSearchSpace(budget);
+      if (space == null)
+         return Collections.<Map<Variable, String>>emptyIterator();
+      final Iterator<Map<Variable, String>> it = solutions(space, budget);
+      return new Iterator<Map<Variable, String>>()
+      {
+         public boolean hasNext()
+         {
+            return it.hasNext();
+         }
+
+         public Map<Variable, String> next()
+         {
+            final Map<Variable, String> assignment = it.next();
+            budget.solution();
+            return assignment;
+         }
+      };
+   }
+
+   // whether a run splits its search over parallel workers, which only a
+   // plain backtracking search over one connected group of variables does
+   // (see setParallelism())
+   private boolean searchesInParallel(SearchSpace space)
+   {
+      return parallelism > 1 && space.size() > 0
+         && !localSearch && !restarts && !joinPlan && maxTreeWidth < 0 && !backjumping
+         && !space.generatesCandidates() && space.components().size() == 1;
+   }
+
+   // the lazy search behind solutions(), stopping if the budget (if not
+   // null) runs out
+   private Iterator<Map<Variable, String>> solutions(SearchSpace space, SearchBudget budget)
+   {
+      if (localSearch)
+         return new LocalSearch(space, localSearchSteps, localSearchSeed, budget);
+      if (restarts)
+         return new RestartSearch(space, restartSeed, backjumping, restartNogoods, budget);
+      if (joinPlan)
+      {
+         final JoinPlan plan = new JoinPlan(space, budget);
+         if (!plan.gaveUp())
+            return plan;
+      }
+      if (maxTreeWidth >= 0)
+      {
+         final TreeDecomposition decomposition = new TreeDecomposition(space);
+         if (decomposition.width() <= maxTreeWidth)
+            return decomposition.solutions(budget);
+      }
+
+      // groups of variables with no constraints between them are solved
+      // separately, and their solutions combined
+      final List<int[]> components = space.components();
+      if (components.size() > 1)
+         return new ProductIterator(space, components, backjumping, budget, parallelism);
+      final SolutionIterator search = new SolutionIterator(space);
+      if (backjumping)
+         search.enableBackjumping();
+      search.setBudget(budget);
+      return search;
+   }
+
+   /**
+    * Lazily enumerate the assignments matching the constraints, as a Stream.
+    *
+    * See solutions().
+    */
+   public Stream<Map<Variable, String>> stream()
+   {
+      return StreamSupport.stream(
+            Spliterators.spliteratorUnknownSize(solutions(),
+               Spliterator.ORDERED | Spliterator.NONNULL),
+            false);
+   }
+
+   /**
+    * Count the assignments matching the constraints, without generating them.
+    *
+    * Groups of variables with no constraints between them are counted
+    * separately and the counts multiplied, and the counts of partial
+    * subproblems are cached and reused, so this can be far faster than
+    * generating all the assignments when there are very many.
+    *
+    * @throws ArithmeticException If there are more than Long.MAX_VALUE.
+    */
+   public long count()
+   {
+      return new SolutionCounter(newSearchSpace()).count();
+   }
+
+   /**
+    * Draw random assignments matching the constraints.
+    *
+    * When the assignments can be counted quickly (see count()), each sample
+    * is drawn uniformly from all of them. Otherwise, samples come from a
+    * search that tries values in random order with restarts, which is only
+    * roughly uniform. Either way, the same seed gives the same samples for
+    * the same constraints.
+    *
+    * Finding out whether they can be counted quickly means trying to count
+    * them first, which tries up to 100,000 values against the constraints
+    * (so may do several times that many knowledge-base lookups) before the
+    * first sample.
+    *
+    * @param n    The number of samples (drawn independently, so may repeat).
+    * @param seed The random seed.
+    * @return The samples; empty if no assignment matches.
+    */
+   public List<Map<Variable, String>> sample(int n, long seed)
+   {
+      final SolutionSampler sampler = new SolutionSampler(newSearchSpace(), seed);
+      final List<Map<Variable, String>> samples = new ArrayList<>();
+      for (int i = 0; i < n; ++i)
+      {
+         final Map<Variable, String> sample = sampler.sample();
+         if (sample == null)
+            break;
+         samples.add(sample);
+      }
+      return samples;
+   }
+
+   /**
+    * Find the highest-scoring assignments matching the constraints, where an
+    * assignment's score is the sum of its constraints' scores (see score()),
+    * e.g. the strengths of the ConceptNet links it uses.
+    *
+    * Searches by branch and bound, so the most typical assignments are found
+    * without enumerating and sorting all of them.
+    *
+    * @param k The number of assignments to return.
+    * @return Up to k assignments, highest-scoring first.
+    */
+   public List<Map<Variable, String>> generateBest(int k)
+   {
+      return new TopKSearch(newSearchSpace(), k).solve();
+   }
+
+   /**
+    * The score of an assignment that matches the constraints: the sum of
+    * each constraint's score (see Constraint.score()).
+    */
+   public double score(Map<Variable, String> assignment)
+   {
+      double score = 0;
+      for (Constraint c : constraints)
+         score += c.score(assignment);
+      return score;
+   }
+
+   /**
+    * Find the assignments that come closest to matching the constraints,
+    * for when none match them all: those violating the least total weight
+    * of constraints (see setWeight()).
+    *
+    * Searches by branch and bound, pruning with a lower bound on the weight
+    * the unassigned variables are bound to violate given the assigned ones.
+    * Unary constraints are soft here too, so domains aren't pruned by them.
+    *
+    * @param k The number of assignments to return.
+    * @return Up to k assignments, least violating first, each with the
+    *         constraints it violates; none violate a hard constraint.
+    */
+   public List<RelaxedSolution> generateRelaxed(int k)
+   {
+      final List<List<String>> domains = unprunedDomains();
+      final SearchSpace space =
+         new SearchSpace(vars, domains, varsToConstraints, matricesOver(domains, null), cache,
+                         adaptiveCheckOrder, valueOrdering, false, compiledChecks, null);
 
-      if (!vars.isEmpty())
-         assign(limit, 0);
+      final List<RelaxedSolution> solutions = new ArrayList<>();
+      for (MaxCspSearch.Costed c : new MaxCspSearch(space, k, weights).solve())
+         solutions.add(new RelaxedSolution(c.assignment, violated(c.assignment), c.cost));
+      return solutions;
+   }
+
+   /**
+    * Set how much violating a constraint costs in generateRelaxed(); 1 by
+    * default. Double.POSITIVE_INFINITY makes it a hard constraint, which
+    * relaxed assignments never violate.
+    *
+    * @throws IllegalArgumentException If the weight isn't positive.
+    */
+   public void setWeight(Constraint constraint, double weight)
+   {
+      if (!(weight > 0))
+         throw new IllegalArgumentException("Constraint weights must be positive: " + weight);
+      if (weight == 1)
+         weights.remove(constraint);
+      else
+         weights.put(constraint, weight);
+   }
+
+   /**
+    * How much violating a constraint costs in generateRelaxed().
+    */
+   public double getWeight(Constraint constraint)
+   {
+      return weights.getOrDefault(constraint, 1.0);
+   }
 
-      return assignments;
+   /**
+    * The constraints an assignment violates, in the order they were added.
+    */
+   public List<Constraint> violated(Map<Variable, String> assignment)
+   {
+      final List<Constraint> violated = new ArrayList<>();
+      for (Constraint c : constraints)
+         if (!c.check(assignment))
+            violated.add(c);
+      return violated;
    }
 
    /**
@@ -483,58 +1185,180 @@ public class ConstraintSolver
       return ret;
    }
 
+   /**
+    * Explain why no assignment matches the constraints, by finding a minimal
+    * set of constraints that can't all be met together: leaving out any one
+    * of them would leave the rest satisfiable (see QuickXplain).
+    *
+    * Each check along the way only searches over a subset of the
+    * constraints, and reuses the compatibility matrices and constraint
+    * results of earlier runs, so this is much quicker than solving again
+    * with each constraint left out in turn.
+    *
+    * @return The conflicting constraints, in the order they were added;
+    *         empty if some variable has no possible values at all; or null
+    *         if some assignment matches all the constraints.
+    */
+   public List<Constraint> explainConflict()
+   {
+      return explainConflict((SearchBudget) null);
+   }
 
-   // assign a value to the variable with index varIndex, then recurse to the next one
-   private void assign(int limit, int varIndex)
+   /**
+    * Explain why no assignment matches the constraints, within the limits
+    * set by some options (see SolveOptions), which apply to all the checks
+    * together.
+    *
+    * The same as explainConflict(), except that a check which runs out of
+    * budget doesn't settle anything, and is taken as satisfiable; so if the
+    * budget runs out (and options.getStopReason() says why), the constraints
+    * returned still conflict, but some of them might not be needed. If it
+    * runs out before even finding out whether there is a conflict, returns
+    * null, as if there weren't.
+    */
+   public List<Constraint> explainConflict(SolveOptions options)
    {
-      if (assignmentCounter >= limit)
-         return;
+      return explainConflict(new SearchBudget(options));
+   }
+
+   // explain a conflict within a budget, if not null
+   private List<Constraint> explainConflict(final SearchBudget budget)
+   {
+      // the domains aren't pruned by the unary constraints, since which of
+      // those apply changes from check to check; instead they're checked
+      // during the search like the rest, and the matrices built once over
+      // the full domains do for every check
+      final List<List<String>> domains = unprunedDomains();
+      final Map<Constraint, CompatibilityMatrix> matrices = matricesOver(domains, budget);
+      if (matrices == null)
+         return null;
+      final boolean generateCandidates = generatesCandidates(domains);
+
+      final QuickXplain explainer = new QuickXplain(subset ->
+         {
+            final Map<Variable, List<Constraint>> subsetConstraints = new HashMap<>();
+            for (Variable var : vars)
+               subsetConstraints.put(var, new ArrayList<>());
+            for (Constraint c : subset)
+               for (Variable var : c.relevantVars())
+                  subsetConstraints.get(var).add(c);
+            final SearchSpace space =
+               new SearchSpace(vars, domains, subsetConstraints, matrices, cache,
+                               adaptiveCheckOrder, valueOrdering, generateCandidates,
+                               compiledChecks, budget);
+            // not finding an assignment only shows there are none if the
+            // search wasn't cut short
+            return new ProductIterator(space, space.components(), backjumping, budget,
+                                       parallelism).hasNext()
+               || (budget != null && budget.stopped());
+         });
+      return explainer.explain(constraints);
+   }
 
-      final Variable var = vars.get(varIndex);
-      final List<String> varValues = var.values != null ? var.values : getDefaultValues(var.type);
-      final List<Constraint> cs = varsToConstraints.get(var);
 
-      // TODO: alternate assignment method... try e.g. walking trees, which
-      // will allow fake-sprites.. maybe look up the first constraint that's
-      // walkable, then use that, and check the others normally?
+   // the possible values of a variable
+   private List<String> getDomain(Variable var)
+   {
+      final List<String> restricted = restrictedDomains.get(var);
+      if (restricted != null)
+         return restricted;
+      if (var.values != null)
+         return var.values;
+      // not getDefaultValues(), whose wrapper would hide an ImplicitDomain
+      return defaultValues.getOrDefault(var.type, Collections.<String>emptyList());
+   }
 
-      // TODO: check the non-boolean base constraints individually then handle
-      // the boolean constraints as a tree on top of them, so we don't re-check
-      // all the base constraints multiple times unnecessarily by subsuming
-      // them into a boolean constraint with a big relevantVars() list
+   // snapshot the current variables and constraints for a generation run
+   private SearchSpace newSearchSpace()
+   {
+      return newSearchSpace(null);
+   }
 
-assign:
-      for (String value : varValues)
+   // the same, but giving up (and returning null) if a run's budget, if not
+   // null, runs out first
+   private SearchSpace newSearchSpace(SearchBudget budget)
+   {
+      // start from the domains pruned by the unary constraints, which (like
+      // the matrices) are reused from the last run unless something changed
+      final List<List<String>> domains = new ArrayList<>();
+      for (Variable var : vars)
       {
-         assignment.put(var, value);
-         // check relevant constraints
-         for (Constraint c : cs)
-         {
-            if (!c.check(assignment))
-            {
-               // didn't work, so try another one
-               assignment.remove(var);
-               continue assign;
-            }
-         }
-         // if we got here, the assignment is okay (so far), so recurse to next var,
-         // unless it's the last one, in which case we're done
-         if (varIndex == vars.size() - 1)
-         {
-            // add the assignment to the list
-            assignments.add(new HashMap<>(assignment));
-            ++assignmentCounter;
-            if (assignmentCounter >= limit)
-               return;
-
-            // continue to find other solutions
-            assignment.remove(var);
-            continue assign;
-         }
-         assign(limit, varIndex + 1);
+         if (budget != null && !budget.check())
+            return null;
+         final List<Constraint> unary = new ArrayList<>();
+         for (Constraint c : varsToConstraints.get(var))
+            if (c.relevantVars().size() == 1)
+               unary.add(c);
+         domains.add(cache.prunedDomain(var, getDomain(var), unary));
+      }
+
+      final Map<Constraint, CompatibilityMatrix> matrices = matricesOver(domains, budget);
+      if (matrices == null)
+         return null;
+      return new SearchSpace(vars, domains, varsToConstraints, matrices, cache,
+                             adaptiveCheckOrder, valueOrdering, generatesCandidates(domains),
+                             compiledChecks, budget);
+   }
+
+   // the possible values of every variable, not pruned by the unary
+   // constraints; copied, since the matrices and results built over them
+   // are kept in the cache, and a Variable's values can be changed in place
+   // (an ImplicitDomain can't, and is too big to copy)
+   private List<List<String>> unprunedDomains()
+   {
+      final List<List<String>> domains = new ArrayList<>();
+      for (Variable var : vars)
+      {
+         final List<String> domain = getDomain(var);
+         domains.add(domain instanceof ImplicitDomain ? domain : new ArrayList<>(domain));
       }
-      // if we got here, ran out of assignments to try, so backtrack
-      return;
+      return domains;
+   }
+
+   // compatibility matrices over the given domains, if they're precomputed,
+   // including for the leaves of boolean constraints if those are compiled;
+   // null if a run's budget (if not null) runs out while building them
+   private Map<Constraint, CompatibilityMatrix> matricesOver(List<List<String>> domains,
+         SearchBudget budget)
+   {
+      if (!precomputeMatrices)
+         return Collections.<Constraint, CompatibilityMatrix>emptyMap();
+      final List<Constraint> binary = new ArrayList<>(constraints);
+      if (compiledChecks)
+         for (Constraint c : constraints)
+            if (c instanceof BooleanConstraint)
+               addLeaves((BooleanConstraint) c, binary);
+      return SearchSpace.buildMatrices(vars, domains, binary, matrixMemoryLimit, cache, budget,
+                                       parallelism);
+   }
+
+   // the base constraints a boolean constraint is built from
+   private static void addLeaves(BooleanConstraint constraint, List<Constraint> leaves)
+   {
+      for (Constraint c : constraint.getConstraints())
+         if (c instanceof BooleanConstraint)
+            addLeaves((BooleanConstraint) c, leaves);
+         else if (!leaves.contains(c))
+            leaves.add(c);
+   }
+
+   // whether to generate candidate values over some domains: always if any
+   // of them is implicit, since those are too big to try every value of
+   private boolean generatesCandidates(List<List<String>> domains)
+   {
+      boolean generate = candidateGeneration;
+      for (List<String> domain : domains)
+         generate |= domain instanceof ImplicitDomain;
+      return generate;
+   }
+
+   // a value list from a specification file: either an implicit-domain spec,
+   // or comma-separated values
+   private static List<String> parseValues(String s)
+   {
+      if (ImplicitDomain.isSpec(s))
+         return ImplicitDomain.parse(s);
+      return Arrays.asList(s.split(", ?", 0));
    }
 
    /**
@@ -543,6 +1367,13 @@ assign:
    private static void outputStringList(BufferedWriter file, Collection<String> strings)
       throws IOException
    {
+      // a narrowed ImplicitDomain is written out value by value, since its
+      // spec would stand for all of them
+      if (strings instanceof ImplicitDomain && ((ImplicitDomain) strings).isWhole())
+      {
+         file.write(((ImplicitDomain) strings).getSpec());
+         return;
+      }
       Iterator<String> it = strings.iterator();
       while (it.hasNext())
       {
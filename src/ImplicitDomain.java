@@ -0,0 +1,289 @@
+/**
+ * A domain too big to list by hand, such as all WordNet nouns, given by a
+ * spec instead of its values:
+ *    noun:*        every noun in WordNet
+ *    verb:*        every verb in WordNet
+ *    conceptnet:*  every ConceptNet node
+ *    hyponyms:X    every hyponym of the noun X, including inherited ones
+ *
+ * It's a read-only List, so it can go anywhere a domain can (e.g. as a
+ * Variable's values, or a type's default values), but the values are never
+ * copied out: all the terms in WordNet and ConceptNet are numbered once, in
+ * alphabetical order, and a domain is just a bitmap over those numbers, with
+ * a running count of its set bits per word so get() and indexOf() don't have
+ * to scan it.
+ *
+ * Trying every value of a domain this big is hopeless, so the solver always
+ * uses candidate generation when a variable has one (see
+ * ConstraintSolver.setCandidateGeneration()); a variable with an implicit
+ * domain needs a constraint that can list its candidates, e.g. a ConceptNet
+ * constraint to a literal or to another variable.
+ *
+ * @author Mark J. Nelson
+ * @date   2026
+ */
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.Arrays;
+import java.util.BitSet;
+
+public final class ImplicitDomain
+   extends AbstractList<String>
+   implements RandomAccess
+{
+   private final String spec;
+   // whether this is all of the spec's values, rather than some of them
+   private final boolean whole;
+   // the domain's values, as a bitmap over the lexicon
+   private final long[] words;
+   // the number of values in the words before each word
+   private final int[] ranks;
+   private final int size;
+   // the List hash code, worked out the first time it's asked for, since
+   // that means going through every value; 0 until then
+   private int hash;
+
+   // every term in WordNet and ConceptNet, numbered alphabetically; built the
+   // first time an implicit domain is used, since it takes a moment
+   private static final class Lexicon
+   {
+      static final Lexicon INSTANCE = new Lexicon();
+
+      final String[] terms;
+      final BitSet nouns, verbs, conceptNet;
+
+      private Lexicon()
+      {
+         final GlobalData data = GlobalData.getInstance();
+         final List<String> nounList = data.wordNet.getWords(WordNet.NOUN);
+         final List<String> verbList = data.wordNet.getWords(WordNet.VERB);
+         final Set<String> nodes = data.conceptNet.getNodes();
+
+         final Set<String> all = new TreeSet<>(nounList);
+         all.addAll(verbList);
+         all.addAll(nodes);
+         terms = all.toArray(new String[all.size()]);
+
+         nouns = bits(nounList);
+         verbs = bits(verbList);
+         conceptNet = bits(nodes);
+      }
+
+      // a term's number, or -1 if it isn't in the lexicon
+      int id(Object term)
+      {
+         if (!(term instanceof String))
+            return -1;
+         final int id = Arrays.binarySearch(terms, term);
+         return id >= 0 ? id : -1;
+      }
+
+      BitSet bits(Collection<String> terms)
+      {
+         final BitSet bits = new BitSet(this.terms.length);
+         for (String term : terms)
+         {
+            // WordNet gives some lemmas capitalised, but indexes them in
+            // lower case
+            int id = id(term);
+            if (id < 0)
+               id = id(term.toLowerCase());
+            if (id >= 0)
+               bits.set(id);
+         }
+         return bits;
+      }
+   }
+
+   private ImplicitDomain(String spec, boolean whole, BitSet bits)
+   {
+      this.spec = spec;
+      this.whole = whole;
+      words = bits.toLongArray();
+      ranks = new int[words.length];
+      int count = 0;
+      for (int w = 0; w < words.length; ++w)
+      {
+         ranks[w] = count;
+         count += Long.bitCount(words[w]);
+      }
+      size = count;
+   }
+
+   /**
+    * Whether a string is an implicit-domain spec, as opposed to a value.
+    */
+   public static boolean isSpec(String s)
+   {
+      return s.equals("noun:*") || s.equals("verb:*") || s.equals("conceptnet:*")
+         || (s.startsWith("hyponyms:") && s.length() > 9);
+   }
+
+   /**
+    * The domain a spec describes.
+    *
+    * @throws IllegalArgumentException If it isn't a spec (see isSpec()), or
+    *                                  is the hyponyms of a word that isn't a
+    *                                  WordNet noun.
+    */
+   public static ImplicitDomain parse(String spec)
+   {
+      if (!isSpec(spec))
+         throw new IllegalArgumentException("Not an implicit domain: " + spec);
+
+      final Lexicon lexicon = Lexicon.INSTANCE;
+      if (spec.equals("noun:*"))
+         return new ImplicitDomain(spec, true, lexicon.nouns);
+      if (spec.equals("verb:*"))
+         return new ImplicitDomain(spec, true, lexicon.verbs);
+      if (spec.equals("conceptnet:*"))
+         return new ImplicitDomain(spec, true, lexicon.conceptNet);
+
+      final String word = spec.substring(9);
+      final WordNet wordNet = GlobalData.getInstance().wordNet;
+      if (!wordNet.isWord(WordNet.NOUN, word))
+         throw new IllegalArgumentException("Not a WordNet noun: " + word);
+      return new ImplicitDomain(spec, true, lexicon.bits(wordNet.getHyponyms(WordNet.NOUN, word)));
+   }
+
+   /**
+    * The spec this domain was made from; if it's been narrowed since (see
+    * isWhole()), only some of the spec's values are left.
+    */
+   public String getSpec()
+   {
+      return spec;
+   }
+
+   /**
+    * Whether this domain is every value its spec describes, rather than
+    * having been narrowed to some of them.
+    */
+   public boolean isWhole()
+   {
+      return whole;
+   }
+
+   public int size()
+   {
+      return size;
+   }
+
+   public String get(int index)
+   {
+      if (index < 0 || index >= size)
+         throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+
+      // the last word with no more than index values before it, which can't
+      // be empty since the value must be in it
+      int lo = 0, hi = words.length - 1;
+      while (lo < hi)
+      {
+         final int mid = (lo + hi + 1) >>> 1;
+         if (ranks[mid] <= index)
+            lo = mid;
+         else
+            hi = mid - 1;
+      }
+      long word = words[lo];
+      for (int k = index - ranks[lo]; k > 0; --k)
+         word &= word - 1;
+      return Lexicon.INSTANCE.terms[lo * 64 + Long.numberOfTrailingZeros(word)];
+   }
+
+   public int indexOf(Object o)
+   {
+      final int id = Lexicon.INSTANCE.id(o);
+      if (id < 0 || (id >>> 6) >= words.length)
+         return -1;
+      final long word = words[id >>> 6];
+      final long bit = 1L << (id & 63);
+      if ((word & bit) == 0)
+         return -1;
+      return ranks[id >>> 6] + Long.bitCount(word & (bit - 1));
+   }
+
+   public int lastIndexOf(Object o)
+   {
+      return indexOf(o);
+   }
+
+   public boolean contains(Object o)
+   {
+      return indexOf(o) >= 0;
+   }
+
+   /**
+    * Equal to any List with the same values in the same order, as the List
+    * contract requires, so it compares the same way from either side. Two
+    * ImplicitDomains are compared by their bitmaps, whatever their specs,
+    * without going through their values.
+    */
+   public boolean equals(Object o)
+   {
+      if (o == this)
+         return true;
+      if (o instanceof ImplicitDomain)
+      {
+         final ImplicitDomain other = (ImplicitDomain) o;
+         return size == other.size && Arrays.equals(words, other.words);
+      }
+      return o instanceof List && ((List<?>) o).size() == size && super.equals(o);
+   }
+
+   public int hashCode()
+   {
+      int h = hash;
+      if (h == 0)
+      {
+         h = 1;
+         final String[] terms = Lexicon.INSTANCE.terms;
+         for (int w = 0; w < words.length; ++w)
+            for (long word = words[w]; word != 0; word &= word - 1)
+               h = 31 * h + terms[w * 64 + Long.numberOfTrailingZeros(word)].hashCode();
+         hash = h;
+      }
+      return h;
+   }
+
+   public String toString()
+   {
+      return whole ? spec : spec + " (narrowed to " + size + " values)";
+   }
+
+   /**
+    * The values of this domain at the given indices, as a domain of their
+    * own.
+    */
+   ImplicitDomain subset(BitSet indices)
+   {
+      final BitSet kept = new BitSet();
+      final BitSet bits = BitSet.valueOf(words);
+      int i = 0;
+      for (int id = bits.nextSetBit(0); id >= 0; id = bits.nextSetBit(id + 1))
+         if (indices.get(i++))
+            kept.set(id);
+      return new ImplicitDomain(spec, false, kept);
+   }
+
+   /**
+    * The values of this domain that are among the given ones, as a domain of
+    * their own (so still in alphabetical order).
+    */
+   ImplicitDomain retain(Collection<String> values)
+   {
+      final BitSet kept = new BitSet();
+      for (String value : values)
+      {
+         final int id = Lexicon.INSTANCE.id(value);
+         if (id >= 0 && contains(value))
+            kept.set(id);
+      }
+      return new ImplicitDomain(spec, false, kept);
+   }
+}
@@ -0,0 +1,615 @@
+/**
+ * Lazily enumerates the solutions of a SearchSpace by evaluating it as a
+ * conjunctive query: each binary constraint is a relation (the pairs of
+ * values that satisfy it), and a solution is a row of their join.
+ *
+ * The plan is built in three steps:
+ *  - scan: each relation is materialised once, from its compatibility
+ *    matrix if it has one, or else by filtering one variable's domain by
+ *    each of the other's values (see Constraint.filter()), only over the
+ *    candidates the constraint lists where it can (see
+ *    Constraint.candidates()), which e.g. for a ConceptNet constraint is a
+ *    sweep over one node's links of one type;
+ *  - semi-join reduction: values and pairs with no partner in some other
+ *    relation on the same variable are dropped, until nothing changes, so
+ *    the joins never build a row that's bound to die;
+ *  - join ordering: variables are bound one at a time, each next one being
+ *    the one whose cheapest relation to the variables bound so far has the
+ *    fewest matches per value, estimated from the reduced relations' sizes.
+ *    A new group of variables starts from the one with the fewest values.
+ * Rows are then streamed depth-first through the plan: each variable's
+ * values are looked up from the index of its joining relation, other
+ * relations to bound variables are semi-join probes, and constraints on
+ * more than two variables are filters once they're all bound.
+ *
+ * Solutions come in a different order than from SolutionIterator.
+ *
+ * Materialising only pays off while the relations are small, so the plan
+ * gives up (see gaveUp()) if they'd take more than MAX_PAIRS pairs in all,
+ * or their scans more than MAX_CHECKS values checked, or a variable has an
+ * ImplicitDomain, which is too big to scan at all; the caller should then
+ * search some other way.
+ *
+ * @author Mark J. Nelson
+ * @date   2026
+ */
+
+import java.util.Iterator;
+import java.util.Collection;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.NoSuchElementException;
+
+class JoinPlan
+   implements Iterator<Map<Variable, String>>
+{
+   // the most pairs the relations may hold between them, and the most
+   // values their scans may check, before the plan gives up
+   static final int MAX_PAIRS = 1 << 22;
+   static final long MAX_CHECKS = 1L << 24;
+
+   private final SearchSpace space;
+   // the run's budget, or null if it has none
+   private final SearchBudget budget;
+
+   // the values of each variable left after semi-join reduction
+   private final BitSet[] alive;
+   private final List<Relation> relations = new ArrayList<>();
+   // how many more pairs and value checks the scans may take
+   private int pairsLeft = MAX_PAIRS;
+   private long checksLeft = MAX_CHECKS;
+   // whether the relations were too big to materialise
+   private boolean gaveUp = false;
+
+   // the plan: the positions in the order they're bound, and per step the
+   // relation its values are looked up from (null to scan its values), the
+   // relations probed once it's bound, and the other constraints checked
+   // then (as indices into space.checks[pos])
+   private final int[] order;
+   private final Relation[] joins;
+   private final Relation[][] probes;
+   private final int[][] filters;
+
+   // the current row, and the domain index of each variable's value in it
+   // (-1 if unbound)
+   private final Map<Variable, String> assignment = new HashMap<>();
+   private final int[] valueIndices;
+   // the values to try at each step, as a range of an array: the next one
+   // to try, and the end
+   private final int[][] options;
+   private final int[] tried, ends;
+   // the step being bound; -1 once the plan is exhausted
+   private int step = 0;
+   // the solution to return from the next call to next(), if already found
+   private Map<Variable, String> nextSolution = null;
+
+   // a binary constraint's satisfying pairs, indexed both ways as flat
+   // arrays: the partners of a's value x are b's values
+   // bTargets[aStarts[x]] to bTargets[aStarts[x + 1] - 1], sorted, and
+   // likewise back
+   private static final class Relation
+   {
+      // the positions of its variables, and its index in space.checks[a]
+      final int a, b, check;
+      private final int aSize, bSize;
+      private int size = 0;
+      private int[] aStarts, bTargets, bStarts, aTargets;
+
+      Relation(int a, int b, int check, int aSize, int bSize)
+      {
+         this.a = a;
+         this.b = b;
+         this.check = check;
+         this.aSize = aSize;
+         this.bSize = bSize;
+      }
+
+      int other(int pos)
+      {
+         return pos == a ? b : a;
+      }
+
+      // where a value of pos's partners start and end in targets(pos)
+      int start(int pos, int value)
+      {
+         return (pos == a ? aStarts : bStarts)[value];
+      }
+
+      int end(int pos, int value)
+      {
+         return (pos == a ? aStarts : bStarts)[value + 1];
+      }
+
+      int[] targets(int pos)
+      {
+         return pos == a ? bTargets : aTargets;
+      }
+
+      boolean partners(int pos, int value, int otherValue)
+      {
+         return Arrays.binarySearch(targets(pos), start(pos, value), end(pos, value),
+                                    otherValue) >= 0;
+      }
+
+      // the average number of partners per value of pos that has any
+      double fanout(int pos)
+      {
+         final int[] starts = pos == a ? aStarts : bStarts;
+         int values = 0;
+         for (int v = 0; v + 1 < starts.length; ++v)
+            if (starts[v + 1] > starts[v])
+               ++values;
+         return values == 0 ? 0 : (double) size / values;
+      }
+
+      // index the pairs (as[k], bs[k]) for k < count
+      void index(int[] as, int[] bs, int count)
+      {
+         size = count;
+         aStarts = new int[aSize + 1];
+         bTargets = new int[count];
+         group(as, bs, count, aStarts, bTargets);
+         bStarts = new int[bSize + 1];
+         aTargets = new int[count];
+         group(bs, as, count, bStarts, aTargets);
+      }
+
+      // counting-sort the pairs by key, with each key's values sorted
+      private static void group(int[] keys, int[] values, int count, int[] starts, int[] targets)
+      {
+         for (int k = 0; k < count; ++k)
+            ++starts[keys[k] + 1];
+         for (int v = 1; v < starts.length; ++v)
+            starts[v] += starts[v - 1];
+         final int[] next = Arrays.copyOf(starts, starts.length - 1);
+         for (int k = 0; k < count; ++k)
+            targets[next[keys[k]]++] = values[k];
+         for (int v = 0; v + 1 < starts.length; ++v)
+            Arrays.sort(targets, starts[v], starts[v + 1]);
+      }
+
+      // drop the pairs using values that aren't alive any more
+      void retain(BitSet aLive, BitSet bLive)
+      {
+         final int[] as = new int[size], bs = new int[size];
+         int count = 0;
+         for (int x = aLive.nextSetBit(0); x >= 0 && x < aSize; x = aLive.nextSetBit(x + 1))
+            for (int k = aStarts[x]; k < aStarts[x + 1]; ++k)
+               if (bLive.get(bTargets[k]))
+               {
+                  as[count] = x;
+                  bs[count] = bTargets[k];
+                  ++count;
+               }
+         if (count < size)
+            index(as, bs, count);
+      }
+
+      // kill the values of pos with no partners; returns whether it killed
+      // any
+      boolean restrict(int pos, BitSet live)
+      {
+         final int[] starts = pos == a ? aStarts : bStarts;
+         boolean changed = false;
+         for (int v = live.nextSetBit(0); v >= 0; v = live.nextSetBit(v + 1))
+            if (v + 1 >= starts.length || starts[v + 1] == starts[v])
+            {
+               live.clear(v);
+               changed = true;
+            }
+         return changed;
+      }
+   }
+
+   /**
+    * @param budget The run's budget; may be null.
+    */
+   JoinPlan(SearchSpace space, SearchBudget budget)
+   {
+      this.space = space;
+      this.budget = budget;
+      final int n = space.size();
+      valueIndices = new int[n];
+      Arrays.fill(valueIndices, -1);
+      alive = new BitSet[n];
+      for (int pos = 0; pos < n; ++pos)
+      {
+         alive[pos] = new BitSet();
+         alive[pos].set(0, space.domains.get(pos).size());
+      }
+
+      order = new int[n];
+      joins = new Relation[n];
+      probes = new Relation[n][];
+      filters = new int[n][];
+      options = new int[n][];
+      tried = new int[n];
+      ends = new int[n];
+
+      // scan: materialise the binary constraints, once each from their
+      // first variable's side; the rest are left as filters
+      for (int pos = 0; pos < n && !gaveUp; ++pos)
+         for (int i = 0; i < space.checks[pos].length && !gaveUp; ++i)
+         {
+            final int[] ps = Arrays.stream(space.checkPositions[pos][i]).distinct().toArray();
+            if (ps.length == 2 && Math.min(ps[0], ps[1]) == pos)
+            {
+               final Relation r = materialise(pos, Math.max(ps[0], ps[1]), i);
+               if (r != null)
+                  relations.add(r);
+               else
+                  gaveUp = true;
+            }
+         }
+      if (gaveUp)
+      {
+         step = -1;
+         return;
+      }
+
+      reduce();
+      plan();
+   }
+
+   /**
+    * Whether the relations were too big to materialise, or the budget ran
+    * out while they were, in which case the plan has no solutions to give,
+    * and the space should be searched some other way.
+    */
+   boolean gaveUp()
+   {
+      return gaveUp;
+   }
+
+   public boolean hasNext()
+   {
+      if (nextSolution == null)
+         nextSolution = advance();
+      return nextSolution != null;
+   }
+
+   public Map<Variable, String> next()
+   {
+      if (!hasNext())
+         throw new NoSuchElementException();
+      final Map<Variable, String> solution = nextSolution;
+      nextSolution = null;
+      return solution;
+   }
+
+   // fill in a relation's pairs, or return null if they're too many or
+   // would take too long to find
+   private Relation materialise(int a, int b, int i)
+   {
+      final List<String> aValues = space.domains.get(a);
+      final List<String> bValues = space.domains.get(b);
+      final Relation r = new Relation(a, b, i, aValues.size(), bValues.size());
+      final CompatibilityMatrix m = space.matrices[a][i];
+      if (m != null)
+      {
+         final boolean aIsRow = space.rowPositions[a][i] == a;
+         final int rows = (aIsRow ? aValues : bValues).size();
+         final int cols = (aIsRow ? bValues : aValues).size();
+         long size = 0;
+         for (int row = 0; row < rows; ++row)
+            size += m.rowSupport(row);
+         if (size > pairsLeft)
+            return null;
+         pairsLeft -= (int) size;
+
+         final int[] as = new int[(int) size], bs = new int[(int) size];
+         int count = 0;
+         for (int row = 0; row < rows; ++row)
+         {
+            if (m.rowSupport(row) == 0)
+               continue;
+            for (int col = 0; col < cols; ++col)
+               if (m.get(row, col))
+               {
+                  as[count] = aIsRow ? row : col;
+                  bs[count] = aIsRow ? col : row;
+                  ++count;
+               }
+         }
+         r.index(as, bs, count);
+         return r;
+      }
+
+      // too big to go through every value of
+      if (aValues instanceof ImplicitDomain || bValues instanceof ImplicitDomain)
+         return null;
+
+      // filter from whichever side the constraint can list the partners
+      // for
+      final Constraint c = space.checks[a][i];
+      final boolean fromB = !aValues.isEmpty()
+         && c.candidates(space.vars[b], single(a, aValues.get(0))) == null;
+      return fromB ? collect(r, b, a) : collect(r, a, b);
+   }
+
+   // add the pairs of a relation found by going through the values of one
+   // of its variables and filtering the other's by each (see
+   // Constraint.filter()), or return null if there are too many
+   private Relation collect(Relation r, int from, int to)
+   {
+      final Constraint c = space.checks[r.a][r.check];
+      final Variable toVar = space.vars[to];
+      final List<String> fromValues = space.domains.get(from);
+      final List<String> toValues = space.domains.get(to);
+      final BitSet all = new BitSet();
+      all.set(0, toValues.size());
+
+      // only a constraint that can list candidates can scan a big
+      // relation in time
+      if (!fromValues.isEmpty()
+            && c.candidates(toVar, single(from, fromValues.get(0))) == null
+            && (long) fromValues.size() * toValues.size() > checksLeft)
+         return null;
+      Map<String, Integer> toIndex = null;
+
+      int[] froms = new int[16], tos = new int[16];
+      int count = 0;
+      for (int x = 0; x < fromValues.size(); ++x)
+      {
+         if (budget != null && !budget.check())
+            return null;
+         final Map<Variable, String> single = single(from, fromValues.get(x));
+
+         BitSet values = all;
+         final Collection<String> candidates = c.candidates(toVar, single);
+         if (candidates != null)
+         {
+            if (toIndex == null)
+            {
+               toIndex = new HashMap<>();
+               for (int y = toValues.size() - 1; y >= 0; --y)
+                  toIndex.put(toValues.get(y), y);
+            }
+            values = new BitSet();
+            for (String value : candidates)
+            {
+               final Integer y = toIndex.get(value);
+               if (y != null)
+                  values.set(y);
+            }
+         }
+         checksLeft -= values.cardinality();
+         if (checksLeft < 0)
+            return null;
+
+         final BitSet partners = c.filter(toVar, toValues, values, single);
+         final int found = partners.cardinality();
+         if (found > pairsLeft)
+            return null;
+         pairsLeft -= found;
+         if (count + found > froms.length)
+         {
+            final int length = Math.max(count + found, 2 * froms.length);
+            froms = Arrays.copyOf(froms, length);
+            tos = Arrays.copyOf(tos, length);
+         }
+         for (int y = partners.nextSetBit(0); y >= 0; y = partners.nextSetBit(y + 1))
+         {
+            froms[count] = x;
+            tos[count] = y;
+            ++count;
+         }
+      }
+
+      if (from == r.a)
+         r.index(froms, tos, count);
+      else
+         r.index(tos, froms, count);
+      return r;
+   }
+
+   // an assignment of just one variable
+   private Map<Variable, String> single(int pos, String value)
+   {
+      final Map<Variable, String> single = new HashMap<>();
+      single.put(space.vars[pos], value);
+      return single;
+   }
+
+   // semi-join reduction: drop the values with no partner in one of their
+   // relations, and the pairs using dropped values, until nothing changes
+   private void reduce()
+   {
+      boolean changed = true;
+      while (changed)
+      {
+         changed = false;
+         for (Relation r : relations)
+         {
+            r.retain(alive[r.a], alive[r.b]);
+            changed |= r.restrict(r.a, alive[r.a]);
+            changed |= r.restrict(r.b, alive[r.b]);
+         }
+      }
+   }
+
+   // choose the order to bind the variables in, and what joins, probes and
+   // filters each step uses
+   private void plan()
+   {
+      final int n = space.size();
+      final boolean[] bound = new boolean[n];
+      final List<List<Relation>> relationsOf = new ArrayList<>();
+      for (int pos = 0; pos < n; ++pos)
+         relationsOf.add(new ArrayList<>());
+      for (Relation r : relations)
+      {
+         relationsOf.get(r.a).add(r);
+         relationsOf.get(r.b).add(r);
+      }
+
+      for (int s = 0; s < n; ++s)
+      {
+         // the unbound variable with the cheapest join to the bound ones
+         int best = -1;
+         Relation bestJoin = null;
+         double bestCost = Double.POSITIVE_INFINITY;
+         for (int pos = 0; pos < n; ++pos)
+         {
+            if (bound[pos])
+               continue;
+            for (Relation r : relationsOf.get(pos))
+            {
+               final int other = r.other(pos);
+               if (!bound[other])
+                  continue;
+               final double cost = r.fanout(other);
+               if (cost < bestCost
+                     || (cost == bestCost && alive[pos].cardinality() < alive[best].cardinality()))
+               {
+                  best = pos;
+                  bestJoin = r;
+                  bestCost = cost;
+               }
+            }
+         }
+
+         // if there's none, start a new group from the related variable with
+         // the fewest values, leaving unrelated ones to last
+         if (best < 0)
+            for (int pos = 0; pos < n; ++pos)
+            {
+               if (bound[pos])
+                  continue;
+               final double cost = relationsOf.get(pos).isEmpty()
+                  ? Double.MAX_VALUE : alive[pos].cardinality();
+               if (best < 0 || cost < bestCost)
+               {
+                  best = pos;
+                  bestCost = cost;
+               }
+            }
+
+         order[s] = best;
+         joins[s] = bestJoin;
+         bound[best] = true;
+
+         final List<Relation> ps = new ArrayList<>();
+         for (Relation r : relationsOf.get(best))
+            if (r != bestJoin && bound[r.other(best)])
+               ps.add(r);
+         probes[s] = ps.toArray(new Relation[ps.size()]);
+
+         // the other constraints on best whose variables are now all bound,
+         // unless an earlier step already checks them
+         final List<Integer> fs = new ArrayList<>();
+         for (int i = 0; i < space.checks[best].length; ++i)
+         {
+            final int[] cPositions = space.checkPositions[best][i];
+            if (Arrays.stream(cPositions).distinct().count() == 2)
+               continue;
+            boolean complete = true;
+            for (int p : cPositions)
+               complete &= bound[p];
+            if (complete)
+               fs.add(i);
+         }
+         filters[s] = fs.stream().mapToInt(Integer::intValue).toArray();
+      }
+   }
+
+   // set up the values to try at a step
+   private void optionsAt(int s)
+   {
+      final int pos = order[s];
+      if (joins[s] != null)
+      {
+         final int from = joins[s].other(pos);
+         options[s] = joins[s].targets(from);
+         tried[s] = joins[s].start(from, valueIndices[from]);
+         ends[s] = joins[s].end(from, valueIndices[from]);
+      }
+      else
+      {
+         options[s] = alive[pos].stream().toArray();
+         tried[s] = 0;
+         ends[s] = options[s].length;
+      }
+   }
+
+   // whether the value just bound at a step agrees with the probes and
+   // filters there
+   private boolean accepted(int s)
+   {
+      final int pos = order[s];
+      final int v = valueIndices[pos];
+      for (Relation r : probes[s])
+      {
+         final int other = r.other(pos);
+         if (!r.partners(other, valueIndices[other], v))
+            return false;
+      }
+      for (int i : filters[s])
+         if (!space.passes(pos, i, assignment, valueIndices))
+            return false;
+      return true;
+   }
+
+   // find the next row of the join, or null if there are no more
+   private Map<Variable, String> advance()
+   {
+      final int n = order.length;
+      if (n == 0)
+      {
+         if (step < 0)
+            return null;
+         step = -1;
+         return new HashMap<>();
+      }
+
+      while (step >= 0)
+      {
+         final int pos = order[step];
+         if (options[step] == null)
+            optionsAt(step);
+         else
+            unbind(pos);
+
+         boolean found = false;
+         while (!found && tried[step] < ends[step])
+         {
+            if (budget != null && !budget.node())
+            {
+               step = -1;
+               return null;
+            }
+            bind(pos, options[step][tried[step]++]);
+            found = accepted(step);
+            if (!found)
+               unbind(pos);
+         }
+
+         if (!found)
+         {
+            options[step] = null;
+            --step;
+         }
+         else if (step == n - 1)
+            return new HashMap<>(assignment);
+         else
+            ++step;
+      }
+      return null;
+   }
+
+   private void bind(int pos, int v)
+   {
+      assignment.put(space.vars[pos], space.domains.get(pos).get(v));
+      valueIndices[pos] = v;
+   }
+
+   private void unbind(int pos)
+   {
+      assignment.remove(space.vars[pos]);
+      valueIndices[pos] = -1;
+   }
+}
@@ -0,0 +1,229 @@
+/**
+ * Finds solutions of a SearchSpace by min-conflicts local search, for when
+ * the domains are too big for complete search to finish.
+ *
+ * Starting from a random complete assignment, each step picks a variable
+ * involved in a violated constraint and moves it to the value that violates
+ * the fewest of its constraints (checked on the complete assignment), until
+ * none are violated. Large domains are sampled rather than scanned in full.
+ * Recently changed (variable, value) pairs are tabu for a few steps, so the
+ * search doesn't cycle, and some steps instead move a random conflicted
+ * variable to a random value (as in WalkSAT), to escape local minima.
+ * After each solution, and after too long without one, it starts over from
+ * a new random assignment.
+ *
+ * Local search can't tell that there are no (more) solutions, so it stops
+ * after a fixed number of steps in total.
+ *
+ * @author Mark J. Nelson
+ * @date   2026
+ */
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.NoSuchElementException;
+
+class LocalSearch
+   implements Iterator<Map<Variable, String>>
+{
+   // chance of a random-walk step instead of a min-conflicts one
+   private static final double NOISE = 0.1;
+   // steps for which a variable can't go back to a value it just left
+   private static final int TABU_TENURE = 10;
+   // the most values to consider for a variable per step
+   private static final int MAX_CANDIDATES = 200;
+   // steps without a solution before starting over, per variable
+   private static final int RESTART_STEPS_PER_VAR = 100;
+
+   private final SearchSpace space;
+   private final Random random;
+   private final SearchBudget budget;
+   private long stepsLeft;
+
+   private final Map<Variable, String> assignment = new HashMap<>();
+   private final int[] valueIndices;
+   // the number of each variable's checks that are violated
+   private final int[] violations;
+   // the step until which each (variable, value) is tabu
+   private final Map<Long, Long> tabuUntil = new HashMap<>();
+   private long step = 0;
+
+   private final Set<Map<Variable, String>> returned = new HashSet<>();
+   private Map<Variable, String> nextSolution = null;
+   private boolean finished = false;
+
+   /**
+    * @param maxSteps The most steps to take in total.
+    * @param budget   The run's budget, counting each step as a node; may be
+    *                 null.
+    */
+   LocalSearch(SearchSpace space, long maxSteps, long seed, SearchBudget budget)
+   {
+      this.space = space;
+      random = new Random(seed);
+      this.budget = budget;
+      stepsLeft = maxSteps;
+      valueIndices = new int[space.size()];
+      violations = new int[space.size()];
+
+      // an empty domain means no solutions
+      for (List<String> domain : space.domains)
+         finished |= domain.isEmpty();
+   }
+
+   public boolean hasNext()
+   {
+      if (nextSolution == null && !finished)
+         nextSolution = advance();
+      return nextSolution != null;
+   }
+
+   public Map<Variable, String> next()
+   {
+      if (!hasNext())
+         throw new NoSuchElementException();
+      final Map<Variable, String> solution = nextSolution;
+      nextSolution = null;
+      return solution;
+   }
+
+   // search from a fresh random assignment until finding a new solution, or
+   // return null once out of steps
+   private Map<Variable, String> advance()
+   {
+      final int n = space.size();
+      if (n == 0)
+      {
+         finished = true;
+         return new HashMap<>();
+      }
+
+      while (true)
+      {
+         randomAssignment();
+         for (long restartStep = 0; restartStep < (long) RESTART_STEPS_PER_VAR * n; ++restartStep)
+         {
+            if (stepsLeft-- <= 0 || (budget != null && !budget.node()))
+            {
+               finished = true;
+               return null;
+            }
+
+            final List<Integer> conflicted = new ArrayList<>();
+            for (int pos = 0; pos < n; ++pos)
+               if (violations[pos] > 0)
+                  conflicted.add(pos);
+            if (conflicted.isEmpty())
+            {
+               final Map<Variable, String> solution = new HashMap<>(assignment);
+               if (returned.add(solution))
+                  return solution;
+               break;
+            }
+
+            ++step;
+            final int pos = conflicted.get(random.nextInt(conflicted.size()));
+            if (random.nextDouble() < NOISE)
+               move(pos, random.nextInt(space.domains.get(pos).size()));
+            else
+               move(pos, bestValue(pos));
+         }
+      }
+   }
+
+   private void randomAssignment()
+   {
+      final int n = space.size();
+      for (int pos = 0; pos < n; ++pos)
+      {
+         final List<String> values = space.domains.get(pos);
+         valueIndices[pos] = random.nextInt(values.size());
+         assignment.put(space.vars[pos], values.get(valueIndices[pos]));
+      }
+      for (int pos = 0; pos < n; ++pos)
+         violations[pos] = countViolations(pos);
+      tabuUntil.clear();
+   }
+
+   // the number of the variable at pos's checks that fail as things stand
+   private int countViolations(int pos)
+   {
+      int count = 0;
+      for (int i = 0; i < space.checks[pos].length; ++i)
+         if (!space.passes(pos, i, assignment, valueIndices))
+            ++count;
+      return count;
+   }
+
+   // the non-tabu value (of a sample, for big domains) that violates fewest
+   // checks, ties broken at random; a tabu value is allowed if it violates
+   // none
+   private int bestValue(int pos)
+   {
+      final List<String> values = space.domains.get(pos);
+      final int current = valueIndices[pos];
+      final int[] candidates;
+      if (values.size() <= MAX_CANDIDATES)
+         candidates = SearchSpace.allPositions(values.size());
+      else
+      {
+         candidates = new int[MAX_CANDIDATES];
+         for (int c = 0; c < MAX_CANDIDATES; ++c)
+            candidates[c] = random.nextInt(values.size());
+      }
+
+      int best = current;
+      int bestCount = Integer.MAX_VALUE;
+      int ties = 0;
+      for (int i : candidates)
+      {
+         if (i == current)
+            continue;
+         setValue(pos, i);
+         final int count = countViolations(pos);
+         final boolean tabu = tabuUntil.getOrDefault(key(pos, i), 0L) > step;
+         if (tabu && count > 0)
+            continue;
+         if (count < bestCount)
+         {
+            best = i;
+            bestCount = count;
+            ties = 1;
+         }
+         else if (count == bestCount && random.nextInt(++ties) == 0)
+            best = i;
+      }
+      setValue(pos, current);
+      return best;
+   }
+
+   // move the variable at pos to a new value, making the old one tabu, and
+   // update the violation counts it affects
+   private void move(int pos, int value)
+   {
+      if (value == valueIndices[pos])
+         return;
+      tabuUntil.put(key(pos, valueIndices[pos]), step + TABU_TENURE);
+      setValue(pos, value);
+      violations[pos] = countViolations(pos);
+      for (int other : space.neighbours[pos])
+         violations[other] = countViolations(other);
+   }
+
+   private void setValue(int pos, int value)
+   {
+      valueIndices[pos] = value;
+      assignment.put(space.vars[pos], space.domains.get(pos).get(value));
+   }
+
+   private static long key(int pos, int value)
+   {
+      return ((long) pos << 32) | value;
+   }
+}
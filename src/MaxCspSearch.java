@@ -0,0 +1,241 @@
+/**
+ * Finds the k assignments of a SearchSpace that violate the least total
+ * weight of constraints (Max-CSP), by branch and bound with partial forward
+ * checking.
+ *
+ * Each constraint is charged to its last variable in the assignment order,
+ * and evaluated against each of that variable's values as soon as its
+ * other variables are all assigned. So at any point, each unassigned
+ * variable has a cost per value: the weight of its charged constraints that
+ * value already violates. The cheapest value of each unassigned variable
+ * adds up to a lower bound on the cost still to come, and a branch is
+ * pruned when its cost so far plus that bound can't beat the k-th best
+ * assignment found so far. Values are tried cheapest first, so good
+ * assignments turn up early and the bound tightens quickly.
+ *
+ * @author Mark J. Nelson
+ * @date   2026
+ */
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.Comparator;
+
+class MaxCspSearch
+{
+   private final SearchSpace space;
+   private final int k;
+
+   // the weight of each check (indexed like space.checks)
+   private final double[][] weights;
+   // per position, the (position, check) pairs to evaluate once it's
+   // assigned, i.e. those whose other variables are then all assigned
+   private final List<List<int[]>> triggered = new ArrayList<>();
+
+   // per position and domain index, the weight of charged constraints that
+   // value violates given the variables assigned so far, and how many of
+   // them are hard (kept apart, since infinities can't be subtracted back)
+   private final double[][] cost;
+   private final int[][] hard;
+
+   private final Map<Variable, String> assignment = new HashMap<>();
+   private final int[] valueIndices;
+   // the best assignments so far, worst first
+   private final PriorityQueue<Costed> best =
+      new PriorityQueue<>(Comparator.comparingDouble((Costed c) -> -c.cost));
+
+   // an assignment and the weight of the constraints it violates
+   static final class Costed
+   {
+      final Map<Variable, String> assignment;
+      final double cost;
+
+      Costed(Map<Variable, String> assignment, double cost)
+      {
+         this.assignment = assignment;
+         this.cost = cost;
+      }
+   }
+
+   /**
+    * @param weights The weight of violating each constraint; 1 for those not
+    *                given. An infinite weight makes a constraint hard.
+    */
+   MaxCspSearch(SearchSpace space, int k, Map<Constraint, Double> weights)
+   {
+      this.space = space;
+      this.k = k;
+      final int n = space.size();
+      valueIndices = new int[n];
+      Arrays.fill(valueIndices, -1);
+      for (int pos = 0; pos < n; ++pos)
+         triggered.add(new ArrayList<>());
+
+      this.weights = new double[n][];
+      cost = new double[n][];
+      hard = new int[n][];
+      final List<int[]> unary = new ArrayList<>();
+      for (int pos = 0; pos < n; ++pos)
+      {
+         this.weights[pos] = new double[space.checks[pos].length];
+         for (int i = 0; i < space.checks[pos].length; ++i)
+         {
+            this.weights[pos][i] = weights.getOrDefault(space.checks[pos][i], 1.0);
+            int trigger = -1;
+            boolean last = true;
+            for (int other : space.checkPositions[pos][i])
+            {
+               last &= other <= pos;
+               if (other != pos)
+                  trigger = Math.max(trigger, other);
+            }
+            if (!last)
+               continue;
+            if (trigger >= 0)
+               triggered.get(trigger).add(new int[] { pos, i });
+            else
+               unary.add(new int[] { pos, i });
+         }
+         cost[pos] = new double[space.domains.get(pos).size()];
+         hard[pos] = new int[cost[pos].length];
+      }
+
+      // unary constraints don't depend on anything else, so are charged up
+      // front
+      for (int[] check : unary)
+         evaluate(check[0], check[1]);
+   }
+
+   /**
+    * The best assignments, best first (ties in no particular order), leaving
+    * out any that violate a hard constraint.
+    */
+   List<Costed> solve()
+   {
+      if (k > 0)
+      {
+         if (space.size() == 0)
+            best.add(new Costed(new HashMap<>(), 0));
+         else
+            search(0, 0);
+      }
+
+      final List<Costed> sorted = new ArrayList<>(best);
+      sorted.sort(Comparator.comparingDouble((Costed c) -> c.cost));
+      return sorted;
+   }
+
+   // whether a branch that will cost at least so much could still make the
+   // top k
+   private boolean promising(double bound)
+   {
+      return bound < Double.POSITIVE_INFINITY
+         && (best.size() < k || bound < best.peek().cost);
+   }
+
+   // the least the positions from pos on can add to the cost
+   private double lowerBound(int pos)
+   {
+      double bound = 0;
+      for (int p = pos; p < space.size(); ++p)
+      {
+         double least = Double.POSITIVE_INFINITY;
+         for (int v = 0; v < cost[p].length; ++v)
+            least = Math.min(least, costOf(p, v));
+         bound += least;
+      }
+      return bound;
+   }
+
+   private void search(int pos, double soFar)
+   {
+      final Variable var = space.vars[pos];
+      final List<String> values = space.domains.get(pos);
+
+      // cheapest values first
+      final Integer[] order = new Integer[values.size()];
+      for (int v = 0; v < order.length; ++v)
+         order[v] = v;
+      Arrays.sort(order, Comparator.comparingDouble((Integer v) -> costOf(pos, v)));
+
+      for (int v : order)
+      {
+         final double newCost = soFar + costOf(pos, v);
+         if (!promising(newCost))
+            break;
+         assignment.put(var, values.get(v));
+         valueIndices[pos] = v;
+
+         if (pos == space.size() - 1)
+         {
+            best.add(new Costed(new HashMap<>(assignment), newCost));
+            if (best.size() > k)
+               best.poll();
+            continue;
+         }
+
+         // charge the constraints this assignment completes but for one
+         // later variable, then recurse if that still leaves room
+         final List<boolean[]> violations = new ArrayList<>();
+         for (int[] check : triggered.get(pos))
+            violations.add(evaluate(check[0], check[1]));
+         if (promising(newCost + lowerBound(pos + 1)))
+            search(pos + 1, newCost);
+         for (int t = 0; t < violations.size(); ++t)
+            uncharge(triggered.get(pos).get(t), violations.get(t));
+      }
+      assignment.remove(var);
+      valueIndices[pos] = -1;
+   }
+
+   // the cost of a value given the variables assigned so far
+   private double costOf(int pos, int v)
+   {
+      return hard[pos][v] > 0 ? Double.POSITIVE_INFINITY : cost[pos][v];
+   }
+
+   // evaluate a check against every value of its position, adding its
+   // weight to the cost of those that violate it; returns which did
+   private boolean[] evaluate(int pos, int i)
+   {
+      final double weight = weights[pos][i];
+      final Variable var = space.vars[pos];
+      final List<String> values = space.domains.get(pos);
+      final boolean[] violated = new boolean[values.size()];
+      for (int v = 0; v < values.size(); ++v)
+      {
+         assignment.put(var, values.get(v));
+         valueIndices[pos] = v;
+         if (!space.passes(pos, i, assignment, valueIndices))
+         {
+            violated[v] = true;
+            if (weight == Double.POSITIVE_INFINITY)
+               ++hard[pos][v];
+            else
+               cost[pos][v] += weight;
+         }
+      }
+      assignment.remove(var);
+      valueIndices[pos] = -1;
+      return violated;
+   }
+
+   // undo evaluate()
+   private void uncharge(int[] check, boolean[] violated)
+   {
+      final int pos = check[0];
+      final double weight = weights[pos][check[1]];
+      for (int v = 0; v < violated.length; ++v)
+         if (violated[v])
+         {
+            if (weight == Double.POSITIVE_INFINITY)
+               --hard[pos][v];
+            else
+               cost[pos][v] -= weight;
+         }
+   }
+}
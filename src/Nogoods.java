@@ -0,0 +1,58 @@
+/**
+ * Remembers which combinations of values failed which constraints, so that
+ * a search never re-checks a combination that's already known to fail when
+ * it reaches it again down another branch.
+ *
+ * Only failures of constraints over a few variables are kept (larger ones
+ * rarely recur), up to a fixed total.
+ *
+ * @author Mark J. Nelson
+ * @date   2026
+ */
+
+import java.util.Map;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.HashSet;
+
+class Nogoods
+{
+   // the most variables a remembered constraint can involve
+   static final int MAX_ARITY = 3;
+   // the most failures to remember
+   private static final int CAPACITY = 1 << 20;
+
+   private final Map<Constraint, Set<ValueKey>> failures = new HashMap<>();
+   private int size = 0;
+
+   /**
+    * Whether the constraint is known to fail for the current values (as
+    * domain indices) of the variables at the given positions.
+    */
+   boolean contains(Constraint c, int[] positions, int[] valueIndices)
+   {
+      final Set<ValueKey> failed = failures.get(c);
+      return failed != null && failed.contains(new ValueKey(positions, valueIndices));
+   }
+
+   /**
+    * Remember that the constraint fails for the current values of the
+    * variables at the given positions.
+    */
+   void add(Constraint c, int[] positions, int[] valueIndices)
+   {
+      if (size >= CAPACITY)
+         return;
+      if (failures.computeIfAbsent(c, k -> new HashSet<>())
+            .add(new ValueKey(positions, valueIndices)))
+         ++size;
+   }
+
+   /**
+    * The number of failures remembered.
+    */
+   int size()
+   {
+      return size;
+   }
+}
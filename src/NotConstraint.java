@@ -6,6 +6,7 @@
  */
 
 import java.util.Map;
+import java.util.function.Function;
 import java.util.Set;
 import java.util.HashSet;
 import java.util.List;
@@ -23,7 +24,18 @@ public class NotConstraint
 
    public boolean check(Map<Variable, String> assignment)
    {
-      return !constraint.check(assignment);
+      return evaluate(assignment) != Truth.UNSAT;
+   }
+
+   public Truth evaluate(Map<Variable, String> assignment)
+   {
+      return evaluate(assignment, c -> c.evaluate(assignment));
+   }
+
+   // an undecided constraint's negation is undecided too, not unsatisfied
+   public Truth evaluate(Map<Variable, String> assignment, Function<Constraint, Truth> leaves)
+   {
+      return constraint.evaluate(assignment, leaves).not();
    }
 
    public String howSatisfied(Variable var, Map<Variable, String> assignment)
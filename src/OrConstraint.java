@@ -6,12 +6,14 @@
  */
 
 import java.util.Map;
+import java.util.function.Function;
 import java.util.Set;
 import java.util.HashSet;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.BitSet;
 
 public class OrConstraint
    extends BooleanConstraint
@@ -29,10 +31,62 @@ public class OrConstraint
 
    public boolean check(Map<Variable, String> assignment)
    {
+      return evaluate(assignment) != Truth.UNSAT;
+   }
+
+   // the values that pass some part
+   public BitSet filter(Variable var, List<String> domain, BitSet values,
+         Map<Variable, String> assignment)
+   {
+      final BitSet passing = new BitSet();
+      final BitSet left = (BitSet) values.clone();
+      for (Constraint c : constraints)
+      {
+         if (left.isEmpty())
+            break;
+         final BitSet passed = c.filter(var, domain, left, assignment);
+         passing.or(passed);
+         left.andNot(passed);
+      }
+      return passing;
+   }
+
+   public Truth evaluate(Map<Variable, String> assignment)
+   {
+      return evaluate(assignment, c -> c.evaluate(assignment));
+   }
+
+   // satisfied as soon as any part is, unsatisfied once all parts are
+   public Truth evaluate(Map<Variable, String> assignment, Function<Constraint, Truth> leaves)
+   {
+      Truth result = Truth.UNSAT;
+      for (Constraint c : constraints)
+      {
+         final Truth t = c.evaluate(assignment, leaves);
+         if (t == Truth.SAT)
+            return Truth.SAT;
+         if (t == Truth.UNKNOWN)
+            result = Truth.UNKNOWN;
+      }
+      return result;
+   }
+
+   // scored by the strongest part that's met
+   public double score(Map<Variable, String> assignment)
+   {
+      double score = 0;
       for (Constraint c : constraints)
          if (c.check(assignment))
-            return true;
-      return false;
+            score = Math.max(score, c.score(assignment));
+      return score;
+   }
+
+   public double maxScore()
+   {
+      double max = 0;
+      for (Constraint c : constraints)
+         max = Math.max(max, c.maxScore());
+      return max;
    }
 
    public String howSatisfied(Variable var, Map<Variable, String> assignment)
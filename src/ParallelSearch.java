@@ -0,0 +1,217 @@
+/**
+ * A backtracking search over a SearchSpace that splits itself into subtrees
+ * for a fork-join pool's workers to steal.
+ *
+ * Each task owns a copy of the partial assignment it was forked with, so the
+ * workers share nothing of the search but the solution count; they do share
+ * the constraints and the knowledge bases behind them, which is why
+ * Constraint.check() has to be thread-safe. A task only forks off its
+ * child subtrees while the pool looks short of work; otherwise it searches
+ * them itself, so splitting adapts to how unevenly the search tree is shaped.
+ *
+ * In ordered mode, a subtree only looks for as many solutions as its parent
+ * still needed when it was forked, and that cap is lowered as the earlier
+ * subtrees come in; once they have enough, the later ones are cancelled,
+ * including any of their own subtrees that other workers have stolen.
+ *
+ * @author Mark J. Nelson
+ * @date   2026
+ */
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.Arrays;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class ParallelSearch
+   extends RecursiveTask<List<Map<Variable, String>>>
+{
+   // fork subtrees while fewer than this many tasks are queued up locally
+   private static final int SURPLUS_TASKS = 2;
+
+   private static final long serialVersionUID = 1L;
+
+   private final SearchSpace space;
+   // the most solutions this task should find; lowered by the parent as
+   // earlier subtrees find theirs (in ordered mode)
+   private volatile int limit;
+   // set once the parent no longer needs this task's solutions
+   private volatile boolean cancelled = false;
+   // the task this one was forked from, or null for the whole search
+   private final ParallelSearch parent;
+   // if true, solutions come back in the same order as a sequential search
+   private final boolean ordered;
+   // solutions found so far, across all tasks (only used when !ordered)
+   private final AtomicInteger found;
+   // the run's budget, or null if it has none
+   private final SearchBudget budget;
+
+   private final int pos;
+   private final Map<Variable, String> assignment;
+   private final int[] valueIndices;
+   private final List<Map<Variable, String>> solutions = new ArrayList<>();
+
+   /**
+    * Search the whole space.
+    *
+    * @param limit   The maximum number of solutions to find, in total.
+    * @param ordered Whether to return the same solutions, in the same order,
+    *                as a sequential search would (at the cost of some
+    *                wasted work past the limit).
+    * @param budget  The run's budget, counting each value tried as a node;
+    *                may be null.
+    */
+   ParallelSearch(SearchSpace space, int limit, boolean ordered, SearchBudget budget)
+   {
+      this(space, limit, ordered, budget, new AtomicInteger(), null, 0,
+           new HashMap<>(), newValueIndices(space.size()));
+   }
+
+   private ParallelSearch(SearchSpace space, int limit, boolean ordered,
+         SearchBudget budget, AtomicInteger found, ParallelSearch parent, int pos,
+         Map<Variable, String> assignment, int[] valueIndices)
+   {
+      this.space = space;
+      this.parent = parent;
+      this.limit = limit;
+      this.ordered = ordered;
+      this.budget = budget;
+      this.found = found;
+      this.pos = pos;
+      this.assignment = assignment;
+      this.valueIndices = valueIndices;
+   }
+
+   private static int[] newValueIndices(int n)
+   {
+      final int[] valueIndices = new int[n];
+      Arrays.fill(valueIndices, -1);
+      return valueIndices;
+   }
+
+   protected List<Map<Variable, String>> compute()
+   {
+      if (space.size() > 0)
+         search(pos);
+      return solutions;
+   }
+
+   // whether this task can stop looking for solutions
+   private boolean done()
+   {
+      if (budget != null && budget.stopped())
+         return true;
+      if (!ordered)
+         return found.get() >= limit;
+      return solutions.size() >= limit || cancelled();
+   }
+
+   // whether this task or one it was forked from has been cancelled
+   private boolean cancelled()
+   {
+      for (ParallelSearch task = this; task != null; task = task.parent)
+         if (task.cancelled)
+            return true;
+      return false;
+   }
+
+   // assign each value to the variable at pos, then recurse to the next one
+   private void search(int pos)
+   {
+      if (done())
+         return;
+
+      final Variable var = space.vars[pos];
+      final List<String> values = space.domains.get(pos);
+      final boolean last = pos == space.size() - 1;
+
+      // if the pool is running dry, hand the subtrees below this variable
+      // out as separate tasks (which are then stolen by idle workers)
+      if (!last && getSurplusQueuedTaskCount() < SURPLUS_TASKS)
+      {
+         split(pos);
+         return;
+      }
+
+      for (int k = 0; k < values.size() && !done(); ++k)
+      {
+         if (budget != null && !budget.node())
+            break;
+         final int i = space.valueAt(pos, k);
+         assignment.put(var, values.get(i));
+         valueIndices[pos] = i;
+         if (!space.consistent(pos, assignment, valueIndices))
+            continue;
+
+         if (last)
+            addSolution();
+         else
+            search(pos + 1);
+      }
+      assignment.remove(var);
+      valueIndices[pos] = -1;
+   }
+
+   // fork one task per consistent value of the variable at pos
+   private void split(int pos)
+   {
+      final Variable var = space.vars[pos];
+      final List<String> values = space.domains.get(pos);
+
+      final List<ParallelSearch> subtasks = new ArrayList<>();
+      for (int k = 0; k < values.size(); ++k)
+      {
+         if (budget != null && !budget.node())
+            break;
+         final int i = space.valueAt(pos, k);
+         assignment.put(var, values.get(i));
+         valueIndices[pos] = i;
+         if (!space.consistent(pos, assignment, valueIndices))
+            continue;
+
+         final ParallelSearch subtask =
+            new ParallelSearch(space, ordered ? limit - solutions.size() : limit, ordered,
+                               budget, found, this, pos + 1,
+                               new HashMap<>(assignment), valueIndices.clone());
+         subtask.fork();
+         subtasks.add(subtask);
+      }
+      assignment.remove(var);
+      valueIndices[pos] = -1;
+
+      // join in order, so that solutions keep the sequential search's order,
+      // telling the later subtasks how many they still need to find
+      for (int t = 0; t < subtasks.size(); ++t)
+      {
+         final ParallelSearch subtask = subtasks.get(t);
+         if (ordered && (solutions.size() >= limit || cancelled()))
+         {
+            subtask.cancelled = true;
+            subtask.cancel(false);
+            continue;
+         }
+         final List<Map<Variable, String>> subsolutions = subtask.join();
+         for (Map<Variable, String> solution : subsolutions)
+         {
+            if (solutions.size() >= limit)
+               break;
+            solutions.add(solution);
+         }
+         if (ordered)
+            for (ParallelSearch later : subtasks.subList(t + 1, subtasks.size()))
+               later.limit = Math.min(later.limit, limit - solutions.size());
+      }
+   }
+
+   private void addSolution()
+   {
+      if (!ordered && found.incrementAndGet() > limit)
+         return;
+      solutions.add(new HashMap<>(assignment));
+      if (budget != null)
+         budget.solution();
+   }
+}
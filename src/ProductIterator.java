@@ -0,0 +1,129 @@
+/**
+ * Lazily enumerates the solutions of a SearchSpace whose constraint graph
+ * falls apart into independent components, as the cartesian product of each
+ * component's solutions.
+ *
+ * Each component is searched on its own, so the total work is the sum of the
+ * components' searches rather than their product. A component's solutions
+ * are only searched for as the product needs them, and remembered so they
+ * can be combined again with the other components' later solutions.
+ *
+ * @author Mark J. Nelson
+ * @date   2026
+ */
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+
+class ProductIterator
+   implements Iterator<Map<Variable, String>>
+{
+   // each component's search, and the solutions it has found so far
+   private final List<SolutionIterator> searches = new ArrayList<>();
+   private final List<List<Map<Variable, String>>> found = new ArrayList<>();
+
+   // the index of each component's solution in the current combination (the
+   // last component varies fastest); null once the product is exhausted
+   private int[] current;
+   // whether current has been returned yet
+   private boolean returned = false;
+
+   /**
+    * @param backjumping Whether the components' searches use conflict-directed
+    *                    backjumping (see SolutionIterator.enableBackjumping()).
+    * @param budget      The run's budget, shared by the components' searches;
+    *                    may be null.
+    * @param parallelism The number of threads to look for the components'
+    *                    first solutions with; with 1, they're looked for one
+    *                    after another on the calling thread.
+    */
+   ProductIterator(SearchSpace space, List<int[]> components, boolean backjumping,
+         SearchBudget budget, int parallelism)
+   {
+      for (int[] component : components)
+      {
+         final SolutionIterator search = new SolutionIterator(space, component);
+         if (backjumping)
+            search.enableBackjumping();
+         search.setBudget(budget);
+         searches.add(search);
+         found.add(new ArrayList<>());
+      }
+
+      // find each component's first solution, in parallel if allowed; if
+      // any of them has none, neither does the whole
+      final boolean satisfiable;
+      if (parallelism > 1 && searches.size() > 1)
+      {
+         // a parallel stream runs on the pool it's started from
+         final ForkJoinPool pool = new ForkJoinPool(parallelism);
+         try
+         {
+            satisfiable = pool.submit(() ->
+               searches.parallelStream().allMatch(SolutionIterator::hasNext)).join();
+         }
+         finally
+         {
+            pool.shutdown();
+         }
+      }
+      else
+         satisfiable = searches.stream().allMatch(SolutionIterator::hasNext);
+      if (!satisfiable)
+         return;
+      for (int c = 0; c < searches.size(); ++c)
+         found.get(c).add(searches.get(c).next());
+      current = new int[searches.size()];
+   }
+
+   public boolean hasNext()
+   {
+      if (current != null && returned)
+      {
+         advance();
+         returned = false;
+      }
+      return current != null;
+   }
+
+   public Map<Variable, String> next()
+   {
+      if (!hasNext())
+         throw new NoSuchElementException();
+      final Map<Variable, String> solution = new HashMap<>();
+      for (int c = 0; c < current.length; ++c)
+         solution.putAll(found.get(c).get(current[c]));
+      returned = true;
+      return solution;
+   }
+
+   // step to the next combination, odometer-style
+   private void advance()
+   {
+      for (int c = current.length - 1; c >= 0; --c)
+      {
+         final List<Map<Variable, String>> solutions = found.get(c);
+         final int next = current[c] + 1;
+         if (next < solutions.size())
+         {
+            current[c] = next;
+            return;
+         }
+         final SolutionIterator search = searches.get(c);
+         if (search.hasNext())
+         {
+            solutions.add(search.next());
+            current[c] = next;
+            return;
+         }
+         // this component has wrapped around, so carry to the previous one
+         current[c] = 0;
+      }
+      current = null;
+   }
+}
@@ -0,0 +1,73 @@
+/**
+ * Finds a minimal set of constraints that can't all be satisfied together,
+ * by Junker's QuickXplain: split the constraints in half, find the
+ * constraints the second half needs to conflict with the first, then those
+ * the first half needs to conflict with them, and so on down.
+ *
+ * For a conflict of k constraints out of n, this takes O(k log(n/k))
+ * satisfiability checks rather than the n of removing one constraint at a
+ * time, and each check is only over a subset of the constraints. Where there
+ * is more than one minimal conflict, the one found is biased towards the
+ * constraints earliest in the list.
+ *
+ * @author Mark J. Nelson
+ * @date   2026
+ */
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.function.Predicate;
+
+class QuickXplain
+{
+   // whether a set of constraints can all be satisfied together; it may
+   // answer true when it can't tell, in which case the conflict found is
+   // still one, but might not be minimal
+   private final Predicate<List<Constraint>> satisfiable;
+
+   QuickXplain(Predicate<List<Constraint>> satisfiable)
+   {
+      this.satisfiable = satisfiable;
+   }
+
+   /**
+    * A minimal subset of the constraints that can't be satisfied, or null
+    * if all of them can. Empty if the variables' domains can't be satisfied
+    * even with no constraints, i.e. one of them is empty.
+    */
+   List<Constraint> explain(List<Constraint> constraints)
+   {
+      if (satisfiable.test(constraints))
+         return null;
+      if (!satisfiable.test(new ArrayList<>()))
+         return new ArrayList<>();
+      return explain(new ArrayList<>(), false, constraints);
+   }
+
+   // the constraints of cs needed to make background unsatisfiable, knowing
+   // that background plus all of cs is; if changed is false, background is
+   // already known to be satisfiable, so isn't checked again
+   private List<Constraint> explain(List<Constraint> background, boolean changed,
+         List<Constraint> cs)
+   {
+      if (changed && !satisfiable.test(background))
+         return new ArrayList<>();
+      if (cs.size() == 1)
+         return new ArrayList<>(cs);
+
+      final int half = cs.size() / 2;
+      final List<Constraint> first = cs.subList(0, half);
+      final List<Constraint> second = cs.subList(half, cs.size());
+
+      final List<Constraint> withFirst = new ArrayList<>(background);
+      withFirst.addAll(first);
+      final List<Constraint> fromSecond = explain(withFirst, !first.isEmpty(), second);
+
+      final List<Constraint> withSecond = new ArrayList<>(background);
+      withSecond.addAll(fromSecond);
+      final List<Constraint> fromFirst = explain(withSecond, !fromSecond.isEmpty(), first);
+
+      fromFirst.addAll(fromSecond);
+      return fromFirst;
+   }
+}
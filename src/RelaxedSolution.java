@@ -0,0 +1,50 @@
+/**
+ * An assignment from ConstraintSolver.generateRelaxed(), which may violate
+ * some constraints, along with which ones and their total weight.
+ *
+ * @author Mark J. Nelson
+ * @date   2026
+ */
+
+import java.util.List;
+import java.util.Map;
+import java.util.Collections;
+
+public class RelaxedSolution
+{
+   private final Map<Variable, String> assignment;
+   private final List<Constraint> violated;
+   private final double cost;
+
+   RelaxedSolution(Map<Variable, String> assignment, List<Constraint> violated, double cost)
+   {
+      this.assignment = Collections.unmodifiableMap(assignment);
+      this.violated = Collections.unmodifiableList(violated);
+      this.cost = cost;
+   }
+
+   /**
+    * The value of every variable.
+    */
+   public Map<Variable, String> getAssignment()
+   {
+      return assignment;
+   }
+
+   /**
+    * The constraints the assignment violates, in the order they were added
+    * to the solver; empty if it matches them all.
+    */
+   public List<Constraint> getViolated()
+   {
+      return violated;
+   }
+
+   /**
+    * The total weight of the violated constraints.
+    */
+   public double getCost()
+   {
+      return cost;
+   }
+}
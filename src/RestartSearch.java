@@ -0,0 +1,141 @@
+/**
+ * Lazily enumerates the solutions of a SearchSpace by a series of
+ * randomised backtracking searches, restarted on a Luby schedule.
+ *
+ * Each search breaks ties in the value order at random (so with the default
+ * ordering, tries values in a fresh random order), and gives up after a
+ * node cutoff that follows the Luby sequence 1, 1, 2, 1, 1, 2, 4, 1, ...
+ * times a unit. A search that wanders into a huge dead subtree is soon
+ * abandoned for one that tries something else, so the time to the first
+ * solution has a short tail, rather than depending on how unlucky the
+ * fixed order is. Solutions already returned by an earlier search are
+ * skipped, and once a search finishes under its cutoff, every solution has
+ * been seen, so the enumeration is complete.
+ *
+ * @author Mark J. Nelson
+ * @date   2026
+ */
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.NoSuchElementException;
+
+class RestartSearch
+   implements Iterator<Map<Variable, String>>
+{
+   // nodes per unit of the Luby sequence
+   private static final long CUTOFF_UNIT = 256;
+
+   private final SearchSpace space;
+   private final Random random;
+   private final boolean backjumping;
+   // failures remembered across restarts (null to start afresh each time)
+   private final Nogoods nogoods;
+   private final SearchBudget budget;
+
+   // the current search, and how many have been started
+   private SolutionIterator search = null;
+   private int restarts = 0;
+   // the solutions returned so far
+   private final Set<Map<Variable, String>> returned = new HashSet<>();
+   private Map<Variable, String> nextSolution = null;
+   private boolean finished = false;
+
+   /**
+    * @param backjumping  Whether each search uses conflict-directed
+    *                     backjumping.
+    * @param keepNogoods  Whether the failed value combinations each search
+    *                     learns are kept for the later ones.
+    * @param budget       The run's budget; may be null.
+    */
+   RestartSearch(SearchSpace space, long seed, boolean backjumping, boolean keepNogoods,
+         SearchBudget budget)
+   {
+      this.space = space;
+      random = new Random(seed);
+      this.backjumping = backjumping;
+      nogoods = keepNogoods ? new Nogoods() : null;
+      this.budget = budget;
+   }
+
+   /**
+    * The i-th element (from 1) of the Luby sequence.
+    */
+   static long luby(int i)
+   {
+      // find the complete subsequence of length 2^k - 1 that i falls in
+      int k = 1;
+      while ((1L << k) - 1 < i)
+         ++k;
+      while (true)
+      {
+         if (i == (1L << k) - 1)
+            return 1L << (k - 1);
+         // otherwise i is in the repeated prefix, of length 2^(k-1) - 1
+         i -= (int) (1L << (k - 1)) - 1;
+         k = 1;
+         while ((1L << k) - 1 < i)
+            ++k;
+      }
+   }
+
+   public boolean hasNext()
+   {
+      if (nextSolution == null && !finished)
+         nextSolution = advance();
+      return nextSolution != null;
+   }
+
+   public Map<Variable, String> next()
+   {
+      if (!hasNext())
+         throw new NoSuchElementException();
+      final Map<Variable, String> solution = nextSolution;
+      nextSolution = null;
+      return solution;
+   }
+
+   // run searches until one finds a new solution, or return null if a
+   // search finishes without one (or the budget runs out)
+   private Map<Variable, String> advance()
+   {
+      while (true)
+      {
+         if (search == null)
+            search = restart();
+         while (search.hasNext())
+         {
+            final Map<Variable, String> solution = search.next();
+            if (returned.add(solution))
+               return solution;
+         }
+         if (!search.cutOff() || (budget != null && budget.stopped()))
+         {
+            finished = true;
+            return null;
+         }
+         search = null;
+      }
+   }
+
+   private SolutionIterator restart()
+   {
+      ++restarts;
+      final int[][] valueOrders = new int[space.size()][];
+      for (int pos = 0; pos < space.size(); ++pos)
+         valueOrders[pos] = space.randomValueOrder(pos, random);
+
+      final SolutionIterator s = new SolutionIterator(space);
+      if (backjumping)
+         s.enableBackjumping();
+      if (nogoods != null)
+         s.useNogoods(nogoods);
+      s.setValueOrders(valueOrders);
+      s.setNodeLimit(luby(restarts) * CUTOFF_UNIT);
+      s.setBudget(budget);
+      return s;
+   }
+}
@@ -0,0 +1,140 @@
+/**
+ * Keeps track of a generation run against its SolveOptions: counts the
+ * nodes (values tried) and solutions, and decides when to stop.
+ *
+ * Shared by all of a run's worker threads. The clock and the cancellation
+ * flag are only looked at every so often, to keep counting a node cheap.
+ *
+ * @author Mark J. Nelson
+ * @date   2026
+ */
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class SearchBudget
+{
+   // look at the clock, the cancellation flag and the progress listener
+   // once per this many nodes
+   private static final int CHECK_INTERVAL = 1024;
+   // the least time between progress reports, in nanoseconds
+   private static final long PROGRESS_INTERVAL = 1000L * 1000 * 1000;
+
+   private final SolveOptions options;
+   private final long deadline;
+   private final long maxNodes;
+
+   private final AtomicLong nodes = new AtomicLong();
+   private final AtomicInteger solutions = new AtomicInteger();
+   private final AtomicLong lastProgress;
+   // why the run stopped early, or null if it hasn't
+   private volatile SolveResult.Status stopped = null;
+
+   SearchBudget(SolveOptions options)
+   {
+      this.options = options;
+      final long now = System.nanoTime();
+      deadline = options.getTimeLimit() >= 0
+         ? now + options.getTimeLimit() * 1000 * 1000
+         : Long.MAX_VALUE;
+      maxNodes = options.getMaxNodes() >= 0 ? options.getMaxNodes() : Long.MAX_VALUE;
+      lastProgress = new AtomicLong(now);
+   }
+
+   /**
+    * Count a node.
+    *
+    * @return Whether the search may go on.
+    */
+   boolean node()
+   {
+      if (stopped != null)
+         return false;
+      final long n = nodes.incrementAndGet();
+      if (n > maxNodes)
+         stop(SolveResult.Status.NODE_BUDGET);
+      else if (n % CHECK_INTERVAL == 0)
+      {
+         final long now = System.nanoTime();
+         if (options.isCancelled())
+            stop(SolveResult.Status.CANCELLED);
+         else if (now - deadline >= 0)
+            stop(SolveResult.Status.TIMEOUT);
+
+         final long last = lastProgress.get();
+         if (options.getProgressListener() != null && now - last >= PROGRESS_INTERVAL
+             && lastProgress.compareAndSet(last, now))
+            report();
+      }
+      return stopped == null;
+   }
+
+   /**
+    * Look at the clock and the cancellation flag now, rather than at the
+    * next node; for the work done before the search starts.
+    *
+    * @return Whether the run may go on.
+    */
+   boolean check()
+   {
+      if (stopped != null)
+         return false;
+      if (options.isCancelled())
+         stop(SolveResult.Status.CANCELLED);
+      else if (System.nanoTime() - deadline >= 0)
+         stop(SolveResult.Status.TIMEOUT);
+      return stopped == null;
+   }
+
+   /**
+    * Count a solution.
+    */
+   void solution()
+   {
+      solutions.incrementAndGet();
+   }
+
+   /**
+    * Whether the run has been stopped early.
+    */
+   boolean stopped()
+   {
+      return stopped != null;
+   }
+
+   private void stop(SolveResult.Status status)
+   {
+      if (stopped == null)
+      {
+         stopped = status;
+         options.stopped(status);
+      }
+   }
+
+   /**
+    * Tell the progress listener, if any, how the run is going.
+    */
+   void report()
+   {
+      final SolveOptions.ProgressListener listener = options.getProgressListener();
+      if (listener != null)
+         listener.progress(nodes.get(), solutions.get());
+   }
+
+   /**
+    * Wrap up the run.
+    *
+    * @param limitReached Whether as many solutions were found as asked for.
+    */
+   SolveResult result(List<Map<Variable, String>> found, boolean limitReached)
+   {
+      report();
+      final SolveResult.Status status =
+         limitReached ? SolveResult.Status.LIMIT
+         : stopped != null ? stopped
+         : SolveResult.Status.COMPLETE;
+      return new SolveResult(found, status, Math.min(nodes.get(), maxNodes));
+   }
+}
@@ -0,0 +1,760 @@
+/**
+ * A snapshot of a ConstraintSolver's variables, domains, and constraint
+ * checks, fixed for the duration of one generation run.
+ *
+ * Variables are referred to by their position in the solver's variable list,
+ * and values by their position in the variable's domain, so that the search
+ * can keep its state in plain int arrays.
+ *
+ * @author Mark J. Nelson
+ * @date   2026
+ */
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.HashSet;
+import java.util.Collection;
+import java.util.TreeSet;
+import java.util.Deque;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.lang.invoke.MethodHandle;
+
+class SearchSpace
+{
+   // the variables, in assignment order
+   final Variable[] vars;
+   // each variable's possible values
+   final List<List<String>> domains;
+   // the order to try each variable's values in, as domain indices, and the
+   // priorities that order comes from (both null for the domain's own
+   // order); see valueAt()
+   private final int[][] valueOrders;
+   private final double[][] valuePriorities;
+   // not final, since it falls back to DOMAIN_ORDER if ranking the values
+   // runs out of budget
+   private ValueOrdering ordering;
+   // each variable's domain index per value, if searches should generate
+   // candidate values from the constraints (null otherwise); see candidates()
+   private final List<Map<String, Integer>> domainIndexes;
+   // the constraints to check after assigning each variable
+   final Constraint[][] checks;
+   // compatibility matrices for the checks that have one (null otherwise),
+   // and the positions of the matrix's row and column variables
+   final CompatibilityMatrix[][] matrices;
+   final int[][] rowPositions, colPositions;
+   // the positions of each check's relevant variables
+   final int[][][] checkPositions;
+   // the boolean checks without a matrix, compiled (see CheckCompiler);
+   // null if they aren't compiled
+   private final MethodHandle[][] compiled;
+
+   // the tables of results kept between runs for the base checks without
+   // a matrix (null where there isn't one)
+   private final SolveCache.Results[][] results;
+   // the order each thread runs the checks in, tuned as it searches (null
+   // to always run them in the order given)
+   private final ThreadLocal<CheckOrder> checkOrders;
+
+   // position of each variable in vars
+   final Map<Variable, Integer> positions = new HashMap<>();
+   // positions of the variables sharing a constraint with each variable
+   final int[][] neighbours;
+
+   // the base constraints that boolean constraints are built from, the
+   // positions of their relevant variables, and their tables of results
+   // kept between runs (if they have one)
+   private final Map<Constraint, int[]> leafPositions = new HashMap<>();
+   private final Map<Constraint, SolveCache.Results> leafResults = new HashMap<>();
+   // the most recent result of each base constraint under a boolean one,
+   // per thread, so that ones sharing a leaf (or boolean constraints
+   // re-checked after assigning an unrelated variable) don't re-evaluate it
+   private final ThreadLocal<Map<Constraint, CachedTruth>> leafCaches =
+      ThreadLocal.withInitial(HashMap::new);
+
+   /**
+    * @param vars               The variables, in assignment order.
+    * @param domains            Each variable's possible values.
+    * @param varsToConstraints  The constraints to check per variable.
+    * @param matrices           Precomputed matrices for binary constraints;
+    *                           constraints without one are checked lazily.
+    * @param cache              Where to remember base constraints' results;
+    *                           may be null.
+    * @param adaptiveChecks     Whether to reorder each variable's checks by
+    *                           their measured cost and failure rate.
+    * @param ordering           The order to try values in.
+    * @param generateCandidates Whether searches should take candidate values
+    *                           from the constraints where they can.
+    * @param compileChecks      Whether to compile the boolean constraints
+    *                           (see CheckCompiler); matrices for their
+    *                           binary leaves are then used too.
+    * @param budget             The run the space is set up for, or null; if
+    *                           it runs out while the values are being ranked
+    *                           (which can mean counting their support), they
+    *                           are tried in the domain's order instead.
+    */
+   SearchSpace(List<Variable> vars, List<List<String>> domains,
+         Map<Variable, List<Constraint>> varsToConstraints,
+         Map<Constraint, CompatibilityMatrix> matrices, SolveCache cache,
+         boolean adaptiveChecks, ValueOrdering ordering, boolean generateCandidates,
+         boolean compileChecks, SearchBudget budget)
+   {
+      final int n = vars.size();
+      this.vars = vars.toArray(new Variable[n]);
+      this.domains = domains;
+      checks = new Constraint[n][];
+      this.matrices = new CompatibilityMatrix[n][];
+      rowPositions = new int[n][];
+      colPositions = new int[n][];
+      checkPositions = new int[n][][];
+      results = new SolveCache.Results[n][];
+      neighbours = new int[n][];
+
+      for (int pos = 0; pos < n; ++pos)
+         positions.put(this.vars[pos], pos);
+
+      for (int pos = 0; pos < n; ++pos)
+      {
+         final List<Constraint> cs = varsToConstraints.get(this.vars[pos]);
+         checks[pos] = cs.toArray(new Constraint[cs.size()]);
+         this.matrices[pos] = new CompatibilityMatrix[cs.size()];
+         rowPositions[pos] = new int[cs.size()];
+         colPositions[pos] = new int[cs.size()];
+         checkPositions[pos] = new int[cs.size()][];
+         results[pos] = new SolveCache.Results[cs.size()];
+         for (int i = 0; i < checks[pos].length; ++i)
+         {
+            final Constraint c = checks[pos][i];
+            checkPositions[pos][i] = positionsOf(c.relevantVars());
+
+            final CompatibilityMatrix m = matrices.get(c);
+            if (m == null)
+            {
+               if (!(c instanceof BooleanConstraint))
+                  results[pos][i] = resultsOf(c, checkPositions[pos][i], cache);
+               continue;
+            }
+            final Integer rowPos = positions.get(m.getRowVariable());
+            final Integer colPos = positions.get(m.getColumnVariable());
+            if (rowPos == null || colPos == null)
+               continue;
+            this.matrices[pos][i] = m;
+            rowPositions[pos][i] = rowPos;
+            colPositions[pos][i] = colPos;
+         }
+      }
+
+      for (int pos = 0; pos < n; ++pos)
+      {
+         final Set<Integer> adjacent = new TreeSet<>();
+         for (Constraint c : checks[pos])
+            for (Variable v : c.relevantVars())
+            {
+               final Integer other = positions.get(v);
+               if (other != null && other != pos)
+                  adjacent.add(other);
+            }
+         neighbours[pos] = adjacent.stream().mapToInt(Integer::intValue).toArray();
+      }
+
+      for (Constraint[] cs : checks)
+         for (Constraint c : cs)
+            if (c instanceof BooleanConstraint)
+               addLeaves((BooleanConstraint) c, cache);
+
+      if (compileChecks)
+      {
+         compiled = new MethodHandle[n][];
+         final CheckCompiler compiler = new CheckCompiler(this, matrices);
+         for (int pos = 0; pos < n; ++pos)
+         {
+            compiled[pos] = new MethodHandle[checks[pos].length];
+            for (int i = 0; i < checks[pos].length; ++i)
+               if (this.matrices[pos][i] == null && checks[pos][i] instanceof BooleanConstraint)
+                  compiled[pos][i] = compiler.compile(checks[pos][i]);
+         }
+      }
+      else
+         compiled = null;
+
+      checkOrders = adaptiveChecks ? ThreadLocal.withInitial(() -> new CheckOrder(checks)) : null;
+
+      this.ordering = ordering;
+      valueOrders = new int[n][];
+      valuePriorities = new double[n][];
+      if (ordering != ValueOrdering.DOMAIN_ORDER)
+         for (int pos = 0; pos < n; ++pos)
+         {
+            // an ImplicitDomain is too big to rank up front, so only the
+            // candidates taken from it are ranked, as they come (see
+            // inOrder())
+            if (domains.get(pos) instanceof ImplicitDomain)
+               continue;
+            valuePriorities[pos] = priorities(pos, cache, budget);
+            if (valuePriorities[pos] == null)
+            {
+               Arrays.fill(valuePriorities, null);
+               Arrays.fill(valueOrders, null);
+               this.ordering = ValueOrdering.DOMAIN_ORDER;
+               break;
+            }
+            valueOrders[pos] = byPriority(pos, allPositions(domains.get(pos).size()));
+         }
+
+      if (generateCandidates)
+      {
+         domainIndexes = new ArrayList<>();
+         for (List<String> domain : domains)
+         {
+            // an ImplicitDomain has a fast indexOf() of its own
+            if (domain instanceof ImplicitDomain)
+            {
+               domainIndexes.add(null);
+               continue;
+            }
+            final Map<String, Integer> index = new HashMap<>();
+            for (int i = domain.size() - 1; i >= 0; --i)
+               index.put(domain.get(i), i);
+            domainIndexes.add(index);
+         }
+      }
+      else
+         domainIndexes = null;
+   }
+
+   /**
+    * Whether searches should call candidates() before trying a variable's
+    * values.
+    */
+   boolean generatesCandidates()
+   {
+      return domainIndexes != null;
+   }
+
+   /**
+    * The values of the variable at pos that might satisfy its constraints,
+    * as domain indices in no particular order, when some constraint whose
+    * other variables are all assigned can list them (see
+    * Constraint.candidates()); the smallest such list is used. Returns null
+    * if no constraint can, meaning every value has to be tried.
+    *
+    * @param source Set to the index in checks[pos] of the constraint the
+    *               candidates came from.
+    */
+   int[] candidates(int pos, Map<Variable, String> assignment, int[] source)
+   {
+      Collection<String> best = null;
+      for (int i = 0; i < checks[pos].length; ++i)
+      {
+         final Collection<String> candidates = checks[pos][i].candidates(vars[pos], assignment);
+         if (candidates != null && (best == null || candidates.size() < best.size()))
+         {
+            best = candidates;
+            source[0] = i;
+         }
+      }
+      if (best == null)
+         return null;
+
+      final List<String> domain = domains.get(pos);
+      final Map<String, Integer> index = domainIndexes.get(pos);
+      final Set<Integer> found = new HashSet<>();
+      for (String value : best)
+      {
+         final int i = index != null ? index.getOrDefault(value, -1) : domain.indexOf(value);
+         if (i >= 0)
+            found.add(i);
+      }
+      return found.stream().mapToInt(Integer::intValue).toArray();
+   }
+
+   // the priority of each of a variable's values; null if a run's budget
+   // (if not null) runs out while counting their support
+   private double[] priorities(int pos, SolveCache cache, SearchBudget budget)
+   {
+      final List<String> values = domains.get(pos);
+      final int[] support = new int[values.size()];
+      for (int i = 0; i < checks[pos].length && ordering.usesSupport(); ++i)
+      {
+         final CompatibilityMatrix m = matrices[pos][i];
+         if (m != null)
+         {
+            final boolean isRow = rowPositions[pos][i] == pos;
+            for (int v = 0; v < support.length; ++v)
+               support[v] += isRow ? m.rowSupport(v) : m.columnSupport(v);
+            continue;
+         }
+         final int other = partner(pos, i);
+         if (other < 0 || domains.get(other) instanceof ImplicitDomain)
+            continue;
+         if (cache != null)
+         {
+            final int[] counts = cache.support(checks[pos][i], vars[pos], values,
+                                               vars[other], domains.get(other), budget);
+            if (counts == null)
+               return null;
+            for (int v = 0; v < support.length; ++v)
+               support[v] += counts[v];
+            continue;
+         }
+         for (int v = 0; v < support.length; ++v)
+         {
+            if (budget != null && !budget.check())
+               return null;
+            support[v] += support(checks[pos][i], vars[pos], values.get(v), vars[other],
+                                  domains.get(other));
+         }
+      }
+
+      final double[] priorities = new double[values.size()];
+      for (int v = 0; v < priorities.length; ++v)
+         priorities[v] = ordering.priority(vars[pos], values.get(v), support[v]);
+      return priorities;
+   }
+
+   // the priority of one of a variable's values, for an ImplicitDomain's
+   // candidates (which never have matrices)
+   private double priority(int pos, int v)
+   {
+      final String value = domains.get(pos).get(v);
+      int support = 0;
+      for (int i = 0; i < checks[pos].length && ordering.usesSupport(); ++i)
+      {
+         final int other = partner(pos, i);
+         if (other >= 0 && !(domains.get(other) instanceof ImplicitDomain))
+            support += support(checks[pos][i], vars[pos], value, vars[other], domains.get(other));
+      }
+      return ordering.priority(vars[pos], value, support);
+   }
+
+   // the other variable of a binary check on pos, or -1 if it isn't binary
+   private int partner(int pos, int i)
+   {
+      for (int p : checkPositions[pos][i])
+         if (p != pos)
+         {
+            for (int q : checkPositions[pos][i])
+               if (q != pos && q != p)
+                  return -1;
+            return p;
+         }
+      return -1;
+   }
+
+   /**
+    * The number of other's values that satisfy a binary constraint with
+    * var's value.
+    */
+   static int support(Constraint c, Variable var, String value,
+         Variable other, List<String> otherValues)
+   {
+      final Map<Variable, String> assignment = new HashMap<>();
+      assignment.put(var, value);
+      final BitSet all = new BitSet();
+      all.set(0, otherValues.size());
+      return c.filter(other, otherValues, all, assignment).cardinality();
+   }
+
+   // sort some of a variable's domain indices by priority, highest first,
+   // keeping ties in the order given
+   private int[] byPriority(int pos, int[] indices)
+   {
+      final double[] priorities = valuePriorities[pos];
+      if (priorities == null)
+         return indices;
+      final Integer[] order = Arrays.stream(indices).boxed().toArray(Integer[]::new);
+      Arrays.sort(order, (a, b) -> Double.compare(priorities[b], priorities[a]));
+      return Arrays.stream(order).mapToInt(Integer::intValue).toArray();
+   }
+
+   static int[] allPositions(int n)
+   {
+      final int[] positions = new int[n];
+      for (int i = 0; i < n; ++i)
+         positions[i] = i;
+      return positions;
+   }
+
+   /**
+    * Some of a variable's domain indices, such as its candidates, in the
+    * order they're tried in: by priority, ties in the domain's order. Only
+    * these values' priorities are looked at, so this stays cheap over an
+    * ImplicitDomain, whose values valueAt() just gives in the domain's order.
+    */
+   int[] inOrder(int pos, int[] indices)
+   {
+      final int[] sorted = indices.clone();
+      Arrays.sort(sorted);
+      if (valuePriorities[pos] != null)
+         return byPriority(pos, sorted);
+      if (ordering == ValueOrdering.DOMAIN_ORDER)
+         return sorted;
+
+      final double[] priorities = new double[sorted.length];
+      final Integer[] order = new Integer[sorted.length];
+      for (int k = 0; k < sorted.length; ++k)
+      {
+         priorities[k] = priority(pos, sorted[k]);
+         order[k] = k;
+      }
+      Arrays.sort(order, (a, b) -> Double.compare(priorities[b], priorities[a]));
+      final int[] ordered = new int[sorted.length];
+      for (int k = 0; k < ordered.length; ++k)
+         ordered[k] = sorted[order[k]];
+      return ordered;
+   }
+
+   /**
+    * An order to try a variable's values in, like valueAt()'s but with ties
+    * between values of equal priority broken at random; or null for an
+    * ImplicitDomain, which is too big to shuffle.
+    */
+   int[] randomValueOrder(int pos, Random random)
+   {
+      if (domains.get(pos) instanceof ImplicitDomain)
+         return null;
+      final int[] indices = allPositions(domains.get(pos).size());
+      for (int i = indices.length - 1; i > 0; --i)
+      {
+         final int j = random.nextInt(i + 1);
+         final int tmp = indices[i];
+         indices[i] = indices[j];
+         indices[j] = tmp;
+      }
+      return byPriority(pos, indices);
+   }
+
+   /**
+    * The domain index of the k-th value to try for the variable at pos.
+    */
+   int valueAt(int pos, int k)
+   {
+      return valueOrders[pos] == null ? k : valueOrders[pos][k];
+   }
+
+   private void addLeaves(BooleanConstraint constraint, SolveCache cache)
+   {
+      for (Constraint c : constraint.getConstraints())
+      {
+         if (c instanceof BooleanConstraint)
+         {
+            addLeaves((BooleanConstraint) c, cache);
+            continue;
+         }
+         if (leafPositions.containsKey(c))
+            continue;
+         final int[] cPositions = positionsOf(c.relevantVars());
+         leafPositions.put(c, cPositions);
+         final SolveCache.Results r = resultsOf(c, cPositions, cache);
+         if (r != null)
+            leafResults.put(c, r);
+      }
+   }
+
+   // the cache's table of a base constraint's results over these domains,
+   // if there's a cache and all the constraint's variables are searched
+   private SolveCache.Results resultsOf(Constraint c, int[] cPositions, SolveCache cache)
+   {
+      if (cache == null || cPositions.length != c.relevantVars().size())
+         return null;
+      final List<List<String>> cDomains = new ArrayList<>();
+      for (int p : cPositions)
+         cDomains.add(domains.get(p));
+      return cache.results(c, cDomains);
+   }
+
+   // the positions of those of the variables that are being searched
+   private int[] positionsOf(Set<Variable> vars)
+   {
+      return vars.stream()
+         .filter(positions::containsKey)
+         .mapToInt(positions::get)
+         .toArray();
+   }
+
+   /**
+    * The number of variables.
+    */
+   int size()
+   {
+      return vars.length;
+   }
+
+   /**
+    * Split the variables into connected components of the constraint graph,
+    * i.e. groups with no constraints between them.
+    *
+    * @return The positions in each component, in increasing order.
+    */
+   List<int[]> components()
+   {
+      final List<int[]> components = new ArrayList<>();
+      final boolean[] seen = new boolean[size()];
+      for (int start = 0; start < size(); ++start)
+      {
+         if (seen[start])
+            continue;
+         final Set<Integer> component = new TreeSet<>();
+         final Deque<Integer> stack = new ArrayDeque<>();
+         stack.push(start);
+         seen[start] = true;
+         while (!stack.isEmpty())
+         {
+            final int pos = stack.pop();
+            component.add(pos);
+            for (int other : neighbours[pos])
+               if (!seen[other])
+               {
+                  seen[other] = true;
+                  stack.push(other);
+               }
+         }
+         components.add(component.stream().mapToInt(Integer::intValue).toArray());
+      }
+      return components;
+   }
+
+   /**
+    * Check the constraints relevant to the variable at position pos, which
+    * has just been assigned.
+    *
+    * @param assignment   The current (partial) assignment.
+    * @param valueIndices The domain index of each variable's value, or -1 if
+    *                     it's unassigned.
+    */
+   boolean consistent(int pos, Map<Variable, String> assignment, int[] valueIndices)
+   {
+      return firstFailure(pos, assignment, valueIndices, null) == -1;
+   }
+
+   /**
+    * Like consistent(), but return which check failed: an index into
+    * checks[pos], or -1 if none did.
+    *
+    * @param nogoods If not null, failures of small constraints on fully
+    *                assigned variables are looked up here first, and added
+    *                to it when found.
+    */
+   int firstFailure(int pos, Map<Variable, String> assignment, int[] valueIndices,
+         Nogoods nogoods)
+   {
+      final Constraint[] cs = checks[pos];
+      final CompatibilityMatrix[] ms = matrices[pos];
+      final CheckOrder stats = checkOrders != null ? checkOrders.get() : null;
+      final int[] order = stats != null ? stats.order(pos) : null;
+      for (int k = 0; k < cs.length; ++k)
+      {
+         final int i = order != null ? order[k] : k;
+         final CompatibilityMatrix m = ms[i];
+         if (m != null)
+         {
+            final int row = valueIndices[rowPositions[pos][i]];
+            final int col = valueIndices[colPositions[pos][i]];
+            // like check(), passes if the other variable isn't assigned yet
+            final boolean failed = row >= 0 && col >= 0 && !m.get(row, col);
+            if (stats != null)
+               stats.record(pos, i, failed, 0);
+            if (failed)
+               return i;
+            continue;
+         }
+
+         final int[] cPositions = checkPositions[pos][i];
+         final boolean remember = nogoods != null
+            && cPositions.length <= Nogoods.MAX_ARITY
+            && allAssigned(cPositions, valueIndices);
+         if (remember && nogoods.contains(cs[i], cPositions, valueIndices))
+         {
+            if (stats != null)
+               stats.record(pos, i, true, 0);
+            return i;
+         }
+
+         final boolean time = stats != null && stats.shouldTime(pos, i);
+         final long start = time ? System.nanoTime() : 0;
+         final boolean failed = !passes(pos, i, cs[i], assignment, valueIndices);
+         if (stats != null)
+            stats.record(pos, i, failed, time ? System.nanoTime() - start : -1);
+         if (failed)
+         {
+            if (remember)
+               nogoods.add(cs[i], cPositions, valueIndices);
+            return i;
+         }
+      }
+      return -1;
+   }
+
+   /**
+    * Whether the i-th check of the variable at pos passes, like one step of
+    * firstFailure() (without the statistics or nogoods).
+    */
+   boolean passes(int pos, int i, Map<Variable, String> assignment, int[] valueIndices)
+   {
+      final CompatibilityMatrix m = matrices[pos][i];
+      if (m == null)
+         return passes(pos, i, checks[pos][i], assignment, valueIndices);
+      final int row = valueIndices[rowPositions[pos][i]];
+      final int col = valueIndices[colPositions[pos][i]];
+      return row < 0 || col < 0 || m.get(row, col);
+   }
+
+   private static boolean allAssigned(int[] positions, int[] valueIndices)
+   {
+      for (int p : positions)
+         if (valueIndices[p] < 0)
+            return false;
+      return true;
+   }
+
+   // check a constraint that has no compatibility matrix, the i-th check of
+   // pos
+   private boolean passes(int pos, int i, Constraint c, Map<Variable, String> assignment,
+         int[] valueIndices)
+   {
+      if (compiled != null && compiled[pos][i] != null)
+         return CheckCompiler.passes(compiled[pos][i], valueIndices, assignment);
+      if (!(c instanceof BooleanConstraint))
+         return results[pos][i] != null
+            ? results[pos][i].check(c, assignment, checkPositions[pos][i], valueIndices)
+            : c.check(assignment);
+
+      // recombine the boolean tree from cached base results where the base
+      // constraint's variables haven't changed since
+      final Map<Constraint, CachedTruth> cache = leafCaches.get();
+      return c.evaluate(assignment,
+            leaf -> evaluateLeaf(leaf, assignment, valueIndices, cache)) != Truth.UNSAT;
+   }
+
+   /**
+    * The result of a base constraint under a boolean one, as a CheckCompiler
+    * truth value, going through the same cache as the uncompiled checks.
+    */
+   int leafTruth(Constraint leaf, int[] valueIndices, Map<Variable, String> assignment)
+   {
+      return CheckCompiler.code(evaluateLeaf(leaf, assignment, valueIndices, leafCaches.get()));
+   }
+
+   /**
+    * The result of a whole boolean constraint, as a CheckCompiler truth
+    * value, for kinds of tree it can't compile.
+    */
+   int treeTruth(Constraint c, int[] valueIndices, Map<Variable, String> assignment)
+   {
+      final Map<Constraint, CachedTruth> cache = leafCaches.get();
+      return CheckCompiler.code(c.evaluate(assignment,
+            leaf -> evaluateLeaf(leaf, assignment, valueIndices, cache)));
+   }
+
+   private Truth evaluateLeaf(Constraint leaf, Map<Variable, String> assignment,
+         int[] valueIndices, Map<Constraint, CachedTruth> cache)
+   {
+      final int[] leafVars = leafPositions.get(leaf);
+      final CachedTruth cached = cache.get(leaf);
+      if (cached != null && cached.matches(leafVars, valueIndices))
+         return cached.truth;
+      final SolveCache.Results leafResult = leafResults.get(leaf);
+      final Truth truth = leafResult != null && allAssigned(leafVars, valueIndices)
+         ? Truth.of(leafResult.check(leaf, assignment, leafVars, valueIndices))
+         : leaf.evaluate(assignment);
+      cache.put(leaf, new CachedTruth(leafVars, valueIndices, truth));
+      return truth;
+   }
+
+   // a base constraint's result, and the values it was evaluated with
+   private static final class CachedTruth
+   {
+      final int[] values;
+      final Truth truth;
+
+      CachedTruth(int[] leafVars, int[] valueIndices, Truth truth)
+      {
+         values = new int[leafVars.length];
+         for (int i = 0; i < leafVars.length; ++i)
+            values[i] = valueIndices[leafVars[i]];
+         this.truth = truth;
+      }
+
+      boolean matches(int[] leafVars, int[] valueIndices)
+      {
+         for (int i = 0; i < leafVars.length; ++i)
+            if (values[i] != valueIndices[leafVars[i]])
+               return false;
+         return true;
+      }
+   }
+
+   /**
+    * Build compatibility matrices for the binary constraints among some
+    * variables, skipping any that would take the total past a memory limit.
+    *
+    * @param memoryLimit Maximum total size of the matrices, in bytes.
+    * @param cache       Where to reuse previously built matrices from, and
+    *                    keep the new ones; may be null.
+    * @param budget      The run the matrices are for, or null; if it runs
+    *                    out before they're all built, returns null.
+    * @param parallelism The number of threads to fill each matrix in with;
+    *                    with 1, they're filled in on the calling thread.
+    */
+   static Map<Constraint, CompatibilityMatrix> buildMatrices(
+         List<Variable> vars, List<List<String>> domains,
+         Iterable<Constraint> constraints, long memoryLimit, SolveCache cache,
+         SearchBudget budget, int parallelism)
+   {
+      final Map<Variable, List<String>> varDomains = new HashMap<>();
+      for (int i = 0; i < vars.size(); ++i)
+         varDomains.put(vars.get(i), domains.get(i));
+
+      final Map<Constraint, CompatibilityMatrix> matrices = new HashMap<>();
+      long bitsLeft = memoryLimit * 8;
+      ForkJoinPool pool = null;
+      try
+      {
+         for (Constraint c : constraints)
+         {
+            if (c.relevantVars().size() != 2)
+               continue;
+            final Iterator<Variable> it = c.relevantVars().iterator();
+            final Variable rowVar = it.next();
+            final Variable colVar = it.next();
+            final List<String> rowValues = varDomains.get(rowVar);
+            final List<String> colValues = varDomains.get(colVar);
+            if (rowValues == null || colValues == null)
+               continue;
+
+            // too big: leave it to be checked lazily during the search; an
+            // ImplicitDomain always is, since filling in the matrix would
+            // mean checking every value of it
+            final long bits = CompatibilityMatrix.sizeInBits(rowValues.size(), colValues.size());
+            if (bits > bitsLeft || !CompatibilityMatrix.fits(rowValues.size(), colValues.size())
+                  || rowValues instanceof ImplicitDomain || colValues instanceof ImplicitDomain)
+               continue;
+            bitsLeft -= bits;
+
+            // one pool for all the matrices, started when the first one is
+            // filled in
+            if (pool == null && parallelism > 1)
+               pool = new ForkJoinPool(parallelism);
+            final CompatibilityMatrix m = cache != null
+               ? cache.matrix(c, rowVar, rowValues, colVar, colValues, budget, pool)
+               : new CompatibilityMatrix(c, rowVar, rowValues, colVar, colValues, budget, pool);
+            if (!m.isComplete())
+               return null;
+            matrices.put(c, m);
+         }
+         return matrices;
+      }
+      finally
+      {
+         if (pool != null)
+            pool.shutdown();
+      }
+   }
+}
@@ -0,0 +1,210 @@
+/**
+ * Counts the solutions of a SearchSpace without building them.
+ *
+ * Variables with no constraints between them (directly or indirectly) are
+ * counted separately and the counts multiplied. Within a component, the
+ * number of ways to finish an assignment from some variable onwards only
+ * depends on the values of the earlier variables that share a constraint
+ * with a later one (the "separator"), so those counts are cached by the
+ * separator's values and reused whenever the search reaches the same
+ * separator assignment by a different path.
+ *
+ * @author Mark J. Nelson
+ * @date   2026
+ */
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Random;
+
+class SolutionCounter
+{
+   private final SearchSpace space;
+   private final List<int[]> components;
+
+   // for each position: the separator positions whose values determine the
+   // count from there on (see above), and the cached counts keyed by them
+   private final int[][] separators;
+   private final List<Map<ValueKey, Long>> caches = new ArrayList<>();
+   // the next position in the same component, or -1 after its last one
+   private final int[] nextInComponent;
+
+   // how many more values count() may try before giving up (negative for no
+   // limit)
+   private long nodesLeft;
+
+   // search state: the partial assignment, and its domain indices
+   private final Map<Variable, String> assignment = new HashMap<>();
+   private final int[] valueIndices;
+
+   SolutionCounter(SearchSpace space)
+   {
+      this(space, -1);
+   }
+
+   /**
+    * @param nodeBudget The most values to try (i.e. check against the
+    *                   constraints) before giving up on counting; negative
+    *                   for no limit. Cached subproblems cost nothing.
+    */
+   SolutionCounter(SearchSpace space, long nodeBudget)
+   {
+      this.space = space;
+      nodesLeft = nodeBudget;
+      components = space.components();
+      final int n = space.size();
+      separators = new int[n][];
+      nextInComponent = new int[n];
+      valueIndices = new int[n];
+      Arrays.fill(valueIndices, -1);
+
+      for (int pos = 0; pos < n; ++pos)
+         caches.add(new HashMap<>());
+
+      for (int[] component : components)
+      {
+         for (int k = 0; k < component.length; ++k)
+         {
+            final int pos = component[k];
+            nextInComponent[pos] = k + 1 < component.length ? component[k+1] : -1;
+
+            // earlier positions adjacent to this one or any later one
+            final boolean[] inSeparator = new boolean[n];
+            for (int j = k; j < component.length; ++j)
+               for (int other : space.neighbours[component[j]])
+                  if (other < pos)
+                     inSeparator[other] = true;
+            int size = 0;
+            for (boolean b : inSeparator)
+               if (b)
+                  ++size;
+            separators[pos] = new int[size];
+            for (int other = 0, i = 0; other < n; ++other)
+               if (inSeparator[other])
+                  separators[pos][i++] = other;
+         }
+      }
+   }
+
+   /**
+    * Count the solutions.
+    *
+    * @return The count, or -1 if the node budget ran out first.
+    * @throws ArithmeticException If the count doesn't fit in a long.
+    */
+   long count()
+   {
+      try
+      {
+         long total = 1;
+         for (int[] component : components)
+         {
+            total = Math.multiplyExact(total, count(component[0]));
+            if (total == 0)
+               return 0;
+         }
+         return total;
+      }
+      catch (BudgetExceeded e)
+      {
+         assignment.clear();
+         Arrays.fill(valueIndices, -1);
+         return -1;
+      }
+   }
+
+   /**
+    * Pick a solution uniformly at random.
+    *
+    * Each variable's value is drawn with probability proportional to the
+    * number of solutions it leaves, using the cached counts, so this is cheap
+    * once count() has succeeded (and must only be called after it has).
+    *
+    * @return A solution, or null if there are none.
+    */
+   Map<Variable, String> sample(Random random)
+   {
+      final Map<Variable, String> solution = new HashMap<>();
+      for (int[] component : components)
+      {
+         for (int pos = component[0]; pos != -1; pos = nextInComponent[pos])
+         {
+            final Variable var = space.vars[pos];
+            final List<String> values = space.domains.get(pos);
+
+            // pick the n'th solution below this variable, counting through
+            // its values in order
+            final long total = count(pos);
+            if (total == 0)
+            {
+               // no solutions at all
+               assignment.clear();
+               Arrays.fill(valueIndices, -1);
+               return null;
+            }
+            long n = Math.min((long) (random.nextDouble() * total), total - 1);
+            for (int i = 0; i < values.size(); ++i)
+            {
+               assignment.put(var, values.get(i));
+               valueIndices[pos] = i;
+               if (!space.consistent(pos, assignment, valueIndices))
+                  continue;
+               final long below = count(nextInComponent[pos]);
+               if (n < below)
+                  break;
+               n -= below;
+            }
+            // the chosen value stays assigned while picking the later ones
+            solution.put(var, assignment.get(var));
+         }
+      }
+      assignment.clear();
+      Arrays.fill(valueIndices, -1);
+      return solution;
+   }
+
+   // count the ways to assign the component's variables from pos onwards,
+   // given the current assignment of the earlier ones
+   private long count(int pos)
+   {
+      if (pos == -1)
+         return 1;
+
+      final Map<ValueKey, Long> cache = caches.get(pos);
+      final ValueKey key = new ValueKey(separators[pos], valueIndices);
+      final Long cached = cache.get(key);
+      if (cached != null)
+         return cached;
+      final Variable var = space.vars[pos];
+      final List<String> values = space.domains.get(pos);
+      if (nodesLeft >= 0)
+      {
+         if (nodesLeft < values.size())
+            throw new BudgetExceeded();
+         nodesLeft -= values.size();
+      }
+      long total = 0;
+      for (int i = 0; i < values.size(); ++i)
+      {
+         assignment.put(var, values.get(i));
+         valueIndices[pos] = i;
+         if (space.consistent(pos, assignment, valueIndices))
+            total = Math.addExact(total, count(nextInComponent[pos]));
+      }
+      assignment.remove(var);
+      valueIndices[pos] = -1;
+
+      cache.put(key, total);
+      return total;
+   }
+
+   // thrown to unwind the search when the node budget runs out
+   private static final class BudgetExceeded
+      extends RuntimeException
+   {
+      private static final long serialVersionUID = 1L;
+   }
+}
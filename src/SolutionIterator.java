@@ -0,0 +1,307 @@
+/**
+ * Lazily enumerates the solutions of a SearchSpace.
+ *
+ * The backtracking search is kept as an explicit stack (the domain index
+ * each variable is currently at), so it can stop after each solution and
+ * resume from the same spot on the next call to next().
+ *
+ * @author Mark J. Nelson
+ * @date   2026
+ */
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.NoSuchElementException;
+
+class SolutionIterator
+   implements Iterator<Map<Variable, String>>
+{
+   private final SearchSpace space;
+   // the positions of the variables to assign, in order
+   private final int[] order;
+
+   // the current partial assignment, and the domain index of each variable's
+   // value in it (-1 if unassigned)
+   private final Map<Variable, String> assignment = new HashMap<>();
+   private final int[] valueIndices;
+   // where each variable's current value is in the order its values are
+   // tried in (see SearchSpace.valueAt()), or -1 if it's unassigned
+   private final int[] tried;
+   // the index in order of the variable currently being assigned; -1 once
+   // the search is finished
+   private int depth = 0;
+
+   // the solution to return from the next call to next(), if already found
+   private Map<Variable, String> nextSolution = null;
+
+   // for conflict-directed backjumping (null if off): the depth of each
+   // position in order, the depths of the earlier variables each variable's
+   // values have conflicted with, and the failures remembered so far
+   private int[] depthOf = null;
+   private BitSet[] conflicts = null;
+   private Nogoods nogoods = null;
+
+   // the run's budget, or null if it has none
+   private SearchBudget budget = null;
+
+   // the order to try each variable's values in, overriding space.valueAt()
+   // (null to use that, for every variable or just one)
+   private int[][] valueOrders = null;
+   // each variable's candidate values (as domain indices, in the order to
+   // try them) while it's assigned, if they came from its constraints; null
+   // for its whole domain
+   private final int[][] candidates;
+   // where each domain index comes in valueOrders, per variable, built when
+   // candidates first need sorting by it
+   private final int[][] ranks;
+   // the most values to try before giving up (-1 for no limit), and how many
+   // have been tried so far
+   private long nodeLimit = -1;
+   private long nodes = 0;
+
+   /**
+    * Enumerate assignments to all the variables.
+    */
+   SolutionIterator(SearchSpace space)
+   {
+      this(space, SearchSpace.allPositions(space.size()));
+   }
+
+   /**
+    * Enumerate assignments to only some of the variables, which must not
+    * share any constraints with the others (e.g., a connected component).
+    *
+    * @param order The positions of the variables, in the order to assign them.
+    */
+   SolutionIterator(SearchSpace space, int[] order)
+   {
+      this.space = space;
+      this.order = order;
+      valueIndices = new int[space.size()];
+      Arrays.fill(valueIndices, -1);
+      tried = new int[space.size()];
+      Arrays.fill(tried, -1);
+      candidates = new int[space.size()][];
+      ranks = new int[space.size()][];
+      if (order.length == 0)
+         depth = -1;
+   }
+
+   /**
+    * Turn on conflict-directed backjumping, before the first call to
+    * hasNext() or next().
+    *
+    * When a variable runs out of values, the search jumps straight back to
+    * the latest variable that one of its values conflicted with (perhaps
+    * indirectly), rather than to the previous variable, whose remaining
+    * values couldn't have helped. Failed value combinations of small
+    * constraints are also remembered, so they're never re-checked.
+    */
+   void enableBackjumping()
+   {
+      depthOf = new int[space.size()];
+      Arrays.fill(depthOf, -1);
+      conflicts = new BitSet[order.length];
+      for (int d = 0; d < order.length; ++d)
+      {
+         depthOf[order[d]] = d;
+         conflicts[d] = new BitSet();
+      }
+      nogoods = new Nogoods();
+   }
+
+   /**
+    * Stop searching (so that hasNext() returns false) once a budget runs out,
+    * counting each value tried as a node.
+    */
+   void setBudget(SearchBudget budget)
+   {
+      this.budget = budget;
+   }
+
+   /**
+    * Try each variable's values in the given order (as domain indices, per
+    * position; null for a position to keep the space's) instead of the
+    * space's, before the first call to hasNext() or next().
+    */
+   void setValueOrders(int[][] valueOrders)
+   {
+      this.valueOrders = valueOrders;
+   }
+
+   /**
+    * Give up (so that hasNext() returns false) after trying this many values.
+    */
+   void setNodeLimit(long limit)
+   {
+      nodeLimit = limit;
+   }
+
+   /**
+    * Whether the search gave up at its node limit, rather than finishing.
+    */
+   boolean cutOff()
+   {
+      return nodeLimit >= 0 && nodes >= nodeLimit;
+   }
+
+   /**
+    * Look up and remember failures in the given nogoods, e.g. to share them
+    * with other searches of the same space. Call after enableBackjumping(),
+    * if using it.
+    */
+   void useNogoods(Nogoods nogoods)
+   {
+      this.nogoods = nogoods;
+   }
+
+   public boolean hasNext()
+   {
+      if (nextSolution == null)
+         nextSolution = advance();
+      return nextSolution != null;
+   }
+
+   public Map<Variable, String> next()
+   {
+      if (!hasNext())
+         throw new NoSuchElementException();
+      final Map<Variable, String> solution = nextSolution;
+      nextSolution = null;
+      return solution;
+   }
+
+   // run the search until the next solution, or return null if there are no
+   // more
+   private Map<Variable, String> advance()
+   {
+      final int last = order.length - 1;
+      while (depth >= 0)
+      {
+         final int pos = order[depth];
+         final Variable var = space.vars[pos];
+         final List<String> values = space.domains.get(pos);
+         // on first reaching a variable, see whether its constraints can
+         // list its candidate values
+         if (tried[pos] == -1 && space.generatesCandidates())
+            candidates[pos] = sortedCandidates(pos);
+         final int[] cands = candidates[pos];
+         final int k = tried[pos] + 1;
+         if (k >= (cands != null ? cands.length : values.size()))
+         {
+            // ran out of values to try, so unassign and backtrack
+            assignment.remove(var);
+            valueIndices[pos] = -1;
+            tried[pos] = -1;
+            candidates[pos] = null;
+            if (conflicts != null)
+               backjump();
+            else
+               --depth;
+            continue;
+         }
+
+         if (budget != null && !budget.node())
+            return null;
+         if (nodeLimit >= 0 && nodes++ >= nodeLimit)
+            return null;
+         tried[pos] = k;
+         final int i = cands != null ? cands[k] : valueAt(pos, k);
+         assignment.put(var, values.get(i));
+         valueIndices[pos] = i;
+         // check relevant constraints, and if it didn't work, try another value
+         final int failed = space.firstFailure(pos, assignment, valueIndices, nogoods);
+         if (failed != -1)
+         {
+            if (conflicts != null)
+               for (int culprit : space.checkPositions[pos][failed])
+                  if (culprit != pos && valueIndices[culprit] >= 0)
+                     conflicts[depth].set(depthOf[culprit]);
+            continue;
+         }
+
+         // the assignment is okay (so far), so move on to the next variable,
+         // unless it's the last one, in which case we have a solution (and
+         // pick up from its next value next time)
+         if (depth == last)
+         {
+            // any earlier variable's other values might lead to more
+            // solutions, so from here on backtrack chronologically
+            if (conflicts != null)
+               for (int d = 0; d <= last; ++d)
+                  conflicts[d].set(0, d);
+            return new HashMap<>(assignment);
+         }
+         ++depth;
+         if (conflicts != null)
+            conflicts[depth].clear();
+      }
+      return null;
+   }
+
+   // the domain index of the k-th value to try for the variable at pos
+   private int valueAt(int pos, int k)
+   {
+      return valueOrders != null && valueOrders[pos] != null
+         ? valueOrders[pos][k] : space.valueAt(pos, k);
+   }
+
+   // the candidate values of the variable at pos from its constraints, in
+   // the order values are tried in, or null if they have to be tried all
+   private int[] sortedCandidates(int pos)
+   {
+      final int[] source = new int[1];
+      final int[] cands = space.candidates(pos, assignment, source);
+      if (cands == null)
+         return null;
+      // the values left out conflict with the constraint's other variables
+      if (conflicts != null)
+         for (int culprit : space.checkPositions[pos][source[0]])
+            if (culprit != pos && valueIndices[culprit] >= 0)
+               conflicts[depth].set(depthOf[culprit]);
+      // only a restart's shuffled order (which an ImplicitDomain never has)
+      // needs ranking over the whole domain
+      if (valueOrders == null || valueOrders[pos] == null)
+         return space.inOrder(pos, cands);
+      if (ranks[pos] == null)
+      {
+         ranks[pos] = new int[space.domains.get(pos).size()];
+         for (int k = 0; k < ranks[pos].length; ++k)
+            ranks[pos][valueAt(pos, k)] = k;
+      }
+      final int[] rank = ranks[pos];
+      return Arrays.stream(cands).boxed()
+         .sorted((a, b) -> Integer.compare(rank[a], rank[b]))
+         .mapToInt(Integer::intValue).toArray();
+   }
+
+   // jump back from the variable at the current depth, which has run out of
+   // values, to the latest variable in its conflict set, passing the rest of
+   // the conflict set on to that variable
+   private void backjump()
+   {
+      final BitSet conflict = conflicts[depth];
+      final int target = conflict.previousSetBit(depth - 1);
+      if (target >= 0)
+      {
+         conflicts[target].or(conflict);
+         conflicts[target].clear(target);
+      }
+      // unassign the variables jumped over
+      for (int d = target + 1; d < depth; ++d)
+      {
+         final int pos = order[d];
+         assignment.remove(space.vars[pos]);
+         valueIndices[pos] = -1;
+         tried[pos] = -1;
+         candidates[pos] = null;
+      }
+      // nothing to jump back to means no values of the earlier variables can
+      // help, so there are no more solutions
+      depth = target;
+   }
+}
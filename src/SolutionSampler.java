@@ -0,0 +1,137 @@
+/**
+ * Draws random solutions from a SearchSpace.
+ *
+ * If the solutions can be counted within a budget, samples are drawn exactly
+ * uniformly, guided by the counts (see SolutionCounter.sample()). Otherwise
+ * it falls back to a backtracking search that tries values in random order
+ * and restarts with a new order (and a bigger node cutoff) whenever it gets
+ * stuck, which is only roughly uniform but never enumerates the space.
+ *
+ * @author Mark J. Nelson
+ * @date   2026
+ */
+
+import java.util.List;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Random;
+
+class SolutionSampler
+{
+   // the most values to try while counting before falling back to restarts;
+   // each is checked against the constraints, so this bounds what setting up
+   // the sampler costs
+   private static final long COUNT_BUDGET = 100000;
+   // node cutoff for the first restart, doubled on each later one
+   private static final long FIRST_CUTOFF = 1000;
+
+   private final SearchSpace space;
+   private final Random random;
+
+   // the counter, if counting succeeded; null if falling back to restarts
+   private SolutionCounter counter;
+   // set once a restart has searched the whole space without a solution
+   private boolean unsatisfiable = false;
+
+   // state of the randomised search
+   private final Map<Variable, String> assignment = new HashMap<>();
+   private final int[] valueIndices;
+   private long nodesLeft;
+
+   SolutionSampler(SearchSpace space, long seed)
+   {
+      this.space = space;
+      random = new Random(seed);
+      valueIndices = new int[space.size()];
+      Arrays.fill(valueIndices, -1);
+
+      counter = new SolutionCounter(space, COUNT_BUDGET);
+      final long count;
+      try
+      {
+         count = counter.count();
+      }
+      catch (ArithmeticException e)
+      {
+         // too many to count exactly
+         counter = null;
+         return;
+      }
+      if (count == -1)
+         counter = null;
+      else if (count == 0)
+         unsatisfiable = true;
+   }
+
+   /**
+    * Draw a random solution.
+    *
+    * @return A solution, or null if there are none.
+    */
+   Map<Variable, String> sample()
+   {
+      if (unsatisfiable)
+         return null;
+      if (counter != null)
+         return counter.sample(random);
+
+      for (long cutoff = FIRST_CUTOFF; ; cutoff *= 2)
+      {
+         nodesLeft = cutoff;
+         final boolean found = space.size() == 0 || search(0);
+         if (found)
+         {
+            final Map<Variable, String> solution = new HashMap<>(assignment);
+            assignment.clear();
+            Arrays.fill(valueIndices, -1);
+            return solution;
+         }
+         if (nodesLeft > 0)
+         {
+            // searched everything without hitting the cutoff
+            unsatisfiable = true;
+            return null;
+         }
+      }
+   }
+
+   // depth-first search trying values in a random order; returns true, leaving
+   // the solution assigned, when it finds one
+   private boolean search(int pos)
+   {
+      final Variable var = space.vars[pos];
+      final List<String> values = space.domains.get(pos);
+      for (int i : shuffledIndices(values.size()))
+      {
+         if (nodesLeft == 0)
+            break;
+         --nodesLeft;
+
+         assignment.put(var, values.get(i));
+         valueIndices[pos] = i;
+         if (!space.consistent(pos, assignment, valueIndices))
+            continue;
+         if (pos == space.size() - 1 || search(pos + 1))
+            return true;
+      }
+      assignment.remove(var);
+      valueIndices[pos] = -1;
+      return false;
+   }
+
+   private int[] shuffledIndices(int n)
+   {
+      final int[] indices = new int[n];
+      for (int i = 0; i < n; ++i)
+         indices[i] = i;
+      for (int i = n - 1; i > 0; --i)
+      {
+         final int j = random.nextInt(i + 1);
+         final int tmp = indices[i];
+         indices[i] = indices[j];
+         indices[j] = tmp;
+      }
+      return indices;
+   }
+}
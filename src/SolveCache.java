@@ -0,0 +1,452 @@
+/**
+ * Work a ConstraintSolver keeps between generation runs, so that re-solving
+ * after a small edit (as in the GUI) only redoes what the edit affected.
+ *
+ * Four things are kept:
+ *  - each variable's domain after filtering it by the variable's unary
+ *    constraints, along with the domain and constraints it came from;
+ *  - compatibility matrices (and so support counts) for binary constraints,
+ *    along with the domains they were computed over;
+ *  - support counts for the binary constraints without a matrix, when a
+ *    value ordering needs them (see ValueOrdering.usesSupport());
+ *  - the results of base constraints on complete tuples of values, i.e.
+ *    the ConceptNet/WordNet lookups themselves, keyed by the values' domain
+ *    indices (see Results).
+ * Pruned domains, matrices and support counts keep copies of the domains
+ * they were computed from, and are checked against them before being
+ * reused, since a Variable's values can be changed in place without telling
+ * the solver. Results are matched by the identity of their domains instead,
+ * so those must be lists the solver owns and never changes: pruned domains,
+ * or copies of the unpruned ones. The solver also drops entries eagerly when
+ * an edit makes them useless.
+ *
+ * @author Mark J. Nelson
+ * @date   2026
+ */
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.Collections;
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+class SolveCache
+{
+   // the most result slots (8 bytes each) all the constraints' tables can
+   // take up together, and the size each table starts at
+   private static final long MAX_RESULT_SLOTS = 1L << 22;
+   private static final int INITIAL_SLOTS = 64;
+
+   private final Map<Variable, PrunedDomain> prunedDomains = new HashMap<>();
+   private final Map<Constraint, CompatibilityMatrix> matrices = new HashMap<>();
+   private final Map<Constraint, Results> results = new HashMap<>();
+   private final Map<Constraint, Map<Variable, Support>> supports = new HashMap<>();
+   private final AtomicLong resultSlots = new AtomicLong();
+
+   // a filtered domain, and what it was filtered from
+   private static final class PrunedDomain
+   {
+      final List<String> source;
+      final List<Constraint> unary;
+      final List<String> values;
+
+      PrunedDomain(List<String> source, List<Constraint> unary, List<String> values)
+      {
+         this.source = source;
+         this.unary = unary;
+         this.values = values;
+      }
+   }
+
+   /**
+    * A variable's domain, minus the values that fail its unary constraints.
+    *
+    * The same list object is returned for as long as the domain and unary
+    * constraints stay the same, so it can be compared by identity.
+    *
+    * Each constraint filters the whole domain at once (see
+    * Constraint.filter()), those that can list their candidates first, so
+    * that e.g. a ConceptNet constraint to a literal marks its links in one
+    * sweep and the rest only test what's left. An ImplicitDomain stays one,
+    * rather than being copied out into a list.
+    */
+   synchronized List<String> prunedDomain(Variable var, List<String> domain, List<Constraint> unary)
+   {
+      final PrunedDomain cached = prunedDomains.get(var);
+      if (cached != null && cached.source.equals(domain) && cached.unary.equals(unary))
+         return cached.values;
+
+      final Map<Variable, String> none = Collections.emptyMap();
+      final List<Constraint> byCandidates = new ArrayList<>();
+      for (Constraint c : unary)
+         if (c.candidates(var, none) != null)
+            byCandidates.add(c);
+      for (Constraint c : unary)
+         if (!byCandidates.contains(c))
+            byCandidates.add(c);
+
+      BitSet kept = new BitSet();
+      kept.set(0, domain.size());
+      for (Constraint c : byCandidates)
+      {
+         if (kept.isEmpty())
+            break;
+         kept = c.filter(var, domain, kept, none);
+      }
+
+      final List<String> values;
+      final List<String> source;
+      if (domain instanceof ImplicitDomain)
+      {
+         source = domain;
+         values = unary.isEmpty() ? domain : ((ImplicitDomain) domain).subset(kept);
+      }
+      else
+      {
+         source = new ArrayList<>(domain);
+         values = new ArrayList<>();
+         for (int i = kept.nextSetBit(0); i >= 0; i = kept.nextSetBit(i + 1))
+            values.add(domain.get(i));
+      }
+      prunedDomains.put(var, new PrunedDomain(source, new ArrayList<>(unary), values));
+      return values;
+   }
+
+   /**
+    * A compatibility matrix for a binary constraint over the given domains,
+    * reused if one was already computed over the same domains, and
+    * otherwise filled in on a pool (or the calling thread, if it's null). If
+    * a run's budget (which may be null) runs out while it's being filled
+    * in, it's returned incomplete, and not kept.
+    */
+   synchronized CompatibilityMatrix matrix(Constraint c, Variable rowVar, List<String> rowValues,
+         Variable colVar, List<String> colValues, SearchBudget budget, ForkJoinPool pool)
+   {
+      final CompatibilityMatrix cached = matrices.get(c);
+      if (cached != null && cached.getRowVariable() == rowVar
+            && cached.isOver(rowValues, colValues))
+         return cached;
+      final CompatibilityMatrix m =
+         new CompatibilityMatrix(c, rowVar, rowValues, colVar, colValues, budget, pool);
+      if (m.isComplete())
+         matrices.put(c, m);
+      return m;
+   }
+
+   // the support counts of one variable's values through a binary
+   // constraint, and the domains they were counted over
+   private static final class Support
+   {
+      final List<String> values, otherValues;
+      final int[] counts;
+
+      Support(List<String> values, List<String> otherValues, int[] counts)
+      {
+         this.values = values;
+         this.otherValues = otherValues;
+         this.counts = counts;
+      }
+   }
+
+   /**
+    * For each of var's values, the number of other's values that satisfy a
+    * binary constraint with it (as CompatibilityMatrix.rowSupport() would
+    * give), reused if already counted over the same domains. Returns null,
+    * keeping nothing, if a run's budget (which may be null) runs out first.
+    */
+   synchronized int[] support(Constraint c, Variable var, List<String> values,
+         Variable other, List<String> otherValues, SearchBudget budget)
+   {
+      final Map<Variable, Support> cSupports = supports.computeIfAbsent(c, k -> new HashMap<>());
+      final Support cached = cSupports.get(var);
+      if (cached != null && cached.values.equals(values) && cached.otherValues.equals(otherValues))
+         return cached.counts;
+      final int[] counts = new int[values.size()];
+      for (int v = 0; v < counts.length; ++v)
+      {
+         if (budget != null && !budget.check())
+            return null;
+         counts[v] = SearchSpace.support(c, var, values.get(v), other, otherValues);
+      }
+      cSupports.put(var, new Support(copy(values), copy(otherValues), counts));
+      return counts;
+   }
+
+   // a copy of a domain that won't change with it; an ImplicitDomain never
+   // changes, and is too big to copy
+   private static List<String> copy(List<String> domain)
+   {
+      return domain instanceof ImplicitDomain ? domain : new ArrayList<>(domain);
+   }
+
+   /**
+    * The table of a base (non-boolean) constraint's results over the given
+    * domains of its variables (in relevantVars() order), reused if it
+    * already has one over the same domain objects; those must never be
+    * changed, since the table can't tell if they are. Returns null if the
+    * domains are too big to key by index, in which case the constraint is
+    * just checked each time.
+    */
+   synchronized Results results(Constraint c, List<List<String>> domains)
+   {
+      final Results cached = results.get(c);
+      if (cached != null && cached.isOver(domains))
+         return cached;
+      if (cached != null)
+         cached.release();
+      final Results r = keyBits(domains) <= 62 ? new Results(domains) : null;
+      if (r != null)
+         results.put(c, r);
+      else
+         results.remove(c);
+      return r;
+   }
+
+   // the bits a key of indices into some domains takes up; it has to leave
+   // two bits of a long for the result
+   private static int keyBits(List<List<String>> domains)
+   {
+      int bits = 0;
+      for (List<String> domain : domains)
+         bits += indexBits(domain);
+      return bits;
+   }
+
+   private static int indexBits(List<String> domain)
+   {
+      return 32 - Integer.numberOfLeadingZeros(Math.max(domain.size() - 1, 1));
+   }
+
+   /**
+    * The results of one base constraint on complete tuples of values, keyed
+    * by the values' domain indices packed into a long.
+    *
+    * An open-addressed table of longs, each holding a key and whether it
+    * passed, so a lookup allocates nothing. Parallel searches share it
+    * without locking: entries are only ever added (by compare-and-set) until
+    * the table fills up, when it's swapped for a bigger one, or an empty one
+    * of the same size once the cache as a whole is at its limit. Entries
+    * added to the old table meanwhile are simply lost.
+    */
+   final class Results
+   {
+      // slot states; an empty slot is 0
+      private static final long PASSES = 1, FAILS = 2;
+      // probe this many slots before giving up on a key
+      private static final int MAX_PROBES = 16;
+
+      private final List<List<String>> domains;
+      // where each variable's index goes in the key
+      private final int[] shifts;
+      private volatile AtomicLongArray slots;
+      private final AtomicInteger used = new AtomicInteger();
+
+      private Results(List<List<String>> domains)
+      {
+         this.domains = new ArrayList<>(domains);
+         shifts = new int[domains.size()];
+         int shift = 0;
+         for (int j = 0; j < shifts.length; ++j)
+         {
+            shifts[j] = shift;
+            shift += indexBits(domains.get(j));
+         }
+         slots = new AtomicLongArray(INITIAL_SLOTS);
+         resultSlots.addAndGet(INITIAL_SLOTS);
+      }
+
+      // whether this table is over the very same domain objects
+      private boolean isOver(List<List<String>> domains)
+      {
+         if (domains.size() != this.domains.size())
+            return false;
+         for (int j = 0; j < domains.size(); ++j)
+            if (domains.get(j) != this.domains.get(j))
+               return false;
+         return true;
+      }
+
+      private void release()
+      {
+         resultSlots.addAndGet(-slots.length());
+      }
+
+      /**
+       * Check the constraint, looking the result up if all its variables
+       * are assigned, and remembering it if it wasn't known yet.
+       *
+       * @param positions    The positions of the constraint's variables in
+       *                     the search, in the same order as the domains.
+       * @param valueIndices The domain index of each position's value, or -1
+       *                     if it's unassigned.
+       */
+      boolean check(Constraint c, Map<Variable, String> assignment, int[] positions,
+            int[] valueIndices)
+      {
+         long key = 0;
+         for (int j = 0; j < positions.length; ++j)
+         {
+            final int v = valueIndices[positions[j]];
+            if (v < 0)
+               return c.check(assignment);
+            key |= (long) v << shifts[j];
+         }
+
+         final AtomicLongArray table = slots;
+         final int mask = table.length() - 1;
+         int slot = hash(key) & mask;
+         for (int probe = 0; probe < MAX_PROBES; ++probe)
+         {
+            final long entry = table.get(slot);
+            if (entry == 0)
+               break;
+            if (entry >>> 2 == key)
+               return (entry & 3) == PASSES;
+            slot = (slot + 1) & mask;
+         }
+
+         final boolean result = c.check(assignment);
+         add(table, key << 2 | (result ? PASSES : FAILS));
+         return result;
+      }
+
+      private void add(AtomicLongArray table, long entry)
+      {
+         final int mask = table.length() - 1;
+         int slot = hash(entry >>> 2) & mask;
+         for (int probe = 0; probe < MAX_PROBES; ++probe)
+         {
+            if (table.compareAndSet(slot, 0, entry))
+            {
+               if (used.incrementAndGet() > table.length() / 2)
+                  grow(table);
+               return;
+            }
+            if (table.get(slot) >>> 2 == entry >>> 2)
+               return;
+            slot = (slot + 1) & mask;
+         }
+         // nowhere to put it nearby, so the table is too crowded
+         grow(table);
+      }
+
+      // swap a full table for one twice the size with the same entries, or
+      // for an empty one of the same size if the cache can't grow any more
+      private synchronized void grow(AtomicLongArray table)
+      {
+         if (slots != table)
+            return;
+         final int size = table.length();
+         if (resultSlots.get() + size > MAX_RESULT_SLOTS)
+         {
+            used.set(0);
+            slots = new AtomicLongArray(size);
+            return;
+         }
+         resultSlots.addAndGet(size);
+         final AtomicLongArray bigger = new AtomicLongArray(2 * size);
+         final int mask = bigger.length() - 1;
+         int count = 0;
+         for (int i = 0; i < size; ++i)
+         {
+            final long entry = table.get(i);
+            if (entry == 0)
+               continue;
+            int slot = hash(entry >>> 2) & mask;
+            while (bigger.get(slot) != 0)
+               slot = (slot + 1) & mask;
+            bigger.set(slot, entry);
+            ++count;
+         }
+         used.set(count);
+         slots = bigger;
+      }
+
+      private int hash(long key)
+      {
+         key *= 0x9E3779B97F4A7C15L;
+         return (int) (key ^ (key >>> 32));
+      }
+   }
+
+   // saved pruned domains and matrices, see snapshot()
+   static final class Snapshot
+   {
+      private final Map<Variable, PrunedDomain> prunedDomains;
+      private final Map<Constraint, CompatibilityMatrix> matrices;
+
+      private Snapshot(Map<Variable, PrunedDomain> prunedDomains,
+            Map<Constraint, CompatibilityMatrix> matrices)
+      {
+         this.prunedDomains = new HashMap<>(prunedDomains);
+         this.matrices = new HashMap<>(matrices);
+      }
+   }
+
+   /**
+    * Save the current pruned domains and matrices, to put back with
+    * restore() once a temporary change is undone.
+    */
+   synchronized Snapshot snapshot()
+   {
+      return new Snapshot(prunedDomains, matrices);
+   }
+
+   /**
+    * Put back the pruned domains and matrices saved by snapshot(), keeping
+    * any built since for other variables and constraints.
+    */
+   synchronized void restore(Snapshot snapshot)
+   {
+      prunedDomains.putAll(snapshot.prunedDomains);
+      matrices.putAll(snapshot.matrices);
+   }
+
+   /**
+    * Drop everything involving a variable, e.g. because it was removed.
+    */
+   synchronized void forget(Variable var)
+   {
+      prunedDomains.remove(var);
+      matrices.values().removeIf(m -> m.getRowVariable() == var || m.getColumnVariable() == var);
+      supports.keySet().removeIf(c -> c.relevantVars().contains(var));
+      results.entrySet().removeIf(e ->
+         {
+            if (!e.getKey().relevantVars().contains(var))
+               return false;
+            e.getValue().release();
+            return true;
+         });
+   }
+
+   /**
+    * Drop everything involving a constraint, e.g. because it was removed.
+    *
+    * The results of the constraints a boolean constraint was built from are
+    * kept, since those constraints go back to being checked on their own.
+    */
+   synchronized void forget(Constraint c)
+   {
+      matrices.remove(c);
+      supports.remove(c);
+      final Results cResults = results.remove(c);
+      if (cResults != null)
+         cResults.release();
+      if (c.relevantVars().size() == 1)
+         prunedDomains.keySet().removeAll(c.relevantVars());
+   }
+
+   /**
+    * Drop the pruned domains of variables using the default domain for a
+    * type, e.g. because the default changed.
+    */
+   synchronized void forgetType(String type)
+   {
+      prunedDomains.keySet().removeIf(var -> var.values == null && var.type.equals(type));
+   }
+}
@@ -0,0 +1,105 @@
+/**
+ * Limits on a generation run, and a way to follow and stop it while it's
+ * going; see ConstraintSolver.generate(int, SolveOptions) and
+ * ConstraintSolver.solutions(SolveOptions).
+ *
+ * A run stops early once any limit is reached or cancel() is called,
+ * returning the solutions found so far; getStopReason() then says why.
+ * Since cancelling can't be undone, use a new SolveOptions for each run
+ * that might be cancelled.
+ *
+ * @author Mark J. Nelson
+ * @date   2026
+ */
+
+public class SolveOptions
+{
+   /**
+    * Told how a run is going, every so often and once more when it ends.
+    * May be called from the solver's worker threads.
+    */
+   public interface ProgressListener
+   {
+      /**
+       * @param nodes     The number of values tried so far.
+       * @param solutions The number of solutions found so far.
+       */
+      void progress(long nodes, int solutions);
+   }
+
+   // wall-clock limit in milliseconds from the start of the run, or -1
+   private long timeLimit = -1;
+   // the most values to try, or -1
+   private long maxNodes = -1;
+   private ProgressListener listener = null;
+   private volatile boolean cancelled = false;
+   private volatile SolveResult.Status stopReason = null;
+
+   /**
+    * Stop after this many milliseconds of wall-clock time. Negative for no
+    * limit, the default.
+    */
+   public void setTimeLimit(long millis)
+   {
+      timeLimit = millis;
+   }
+
+   public long getTimeLimit()
+   {
+      return timeLimit;
+   }
+
+   /**
+    * Stop after trying this many values for variables. Negative for no
+    * limit, the default.
+    */
+   public void setMaxNodes(long nodes)
+   {
+      maxNodes = nodes;
+   }
+
+   public long getMaxNodes()
+   {
+      return maxNodes;
+   }
+
+   public void setProgressListener(ProgressListener listener)
+   {
+      this.listener = listener;
+   }
+
+   public ProgressListener getProgressListener()
+   {
+      return listener;
+   }
+
+   /**
+    * Ask a run using these options to stop as soon as it can. Safe to call
+    * from any thread.
+    */
+   public void cancel()
+   {
+      cancelled = true;
+   }
+
+   public boolean isCancelled()
+   {
+      return cancelled;
+   }
+
+   /**
+    * Why a run using these options stopped early, or null if it hasn't
+    * (yet). Useful with ConstraintSolver.solutions(SolveOptions), whose
+    * iterator just runs out.
+    */
+   public SolveResult.Status getStopReason()
+   {
+      return stopReason;
+   }
+
+   // called by the run's SearchBudget when it stops early
+   void stopped(SolveResult.Status status)
+   {
+      stopReason = status;
+   }
+}
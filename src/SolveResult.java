@@ -0,0 +1,69 @@
+/**
+ * The solutions from a generation run with SolveOptions, and why it stopped.
+ *
+ * @author Mark J. Nelson
+ * @date   2026
+ */
+
+import java.util.List;
+import java.util.Map;
+import java.util.Collections;
+
+public class SolveResult
+{
+   public enum Status
+   {
+      /** Every solution was found. */
+      COMPLETE,
+      /** Stopped after finding as many solutions as were asked for. */
+      LIMIT,
+      /** Stopped at the time limit. */
+      TIMEOUT,
+      /** Stopped at the node budget. */
+      NODE_BUDGET,
+      /** Stopped by SolveOptions.cancel(). */
+      CANCELLED
+   }
+
+   private final List<Map<Variable, String>> solutions;
+   private final Status status;
+   private final long nodes;
+
+   SolveResult(List<Map<Variable, String>> solutions, Status status, long nodes)
+   {
+      this.solutions = solutions;
+      this.status = status;
+      this.nodes = nodes;
+   }
+
+   /**
+    * The solutions found; all of them only if the status is COMPLETE.
+    */
+   public List<Map<Variable, String>> getSolutions()
+   {
+      return Collections.unmodifiableList(solutions);
+   }
+
+   public Status getStatus()
+   {
+      return status;
+   }
+
+   /**
+    * Whether the run stopped early because of a limit in the SolveOptions or
+    * a cancellation, rather than running out of solutions or reaching the
+    * number asked for.
+    */
+   public boolean isPartial()
+   {
+      return status != Status.COMPLETE && status != Status.LIMIT;
+   }
+
+   /**
+    * The number of values tried for variables during the run.
+    */
+   public long getNodes()
+   {
+      return nodes;
+   }
+}
@@ -0,0 +1,151 @@
+/**
+ * Finds the k highest-scoring solutions of a SearchSpace by branch and
+ * bound, where a solution's score is the sum of its constraints' scores
+ * (see Constraint.score()).
+ *
+ * Each constraint is scored once, as soon as its last variable is assigned.
+ * A branch is pruned when the score so far plus the most the constraints not
+ * yet scored could add (their maxScore()) can't beat the k-th best solution
+ * found so far. Values are tried in order of the score they add straight
+ * away, so good solutions turn up early and the bound tightens quickly.
+ *
+ * @author Mark J. Nelson
+ * @date   2026
+ */
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.Comparator;
+
+class TopKSearch
+{
+   private final SearchSpace space;
+   private final int k;
+
+   // the constraints scored when each position is assigned, i.e. those whose
+   // other variables all come earlier
+   private final Constraint[][] scored;
+   // the most that the constraints scored after each position could add
+   private final double[] boundAfter;
+
+   private final Map<Variable, String> assignment = new HashMap<>();
+   private final int[] valueIndices;
+   // the best solutions so far, worst first
+   private final PriorityQueue<Scored> best =
+      new PriorityQueue<>(Comparator.comparingDouble((Scored s) -> s.score));
+
+   // a solution and its score
+   private static final class Scored
+   {
+      final Map<Variable, String> solution;
+      final double score;
+
+      Scored(Map<Variable, String> solution, double score)
+      {
+         this.solution = solution;
+         this.score = score;
+      }
+   }
+
+   TopKSearch(SearchSpace space, int k)
+   {
+      this.space = space;
+      this.k = k;
+      final int n = space.size();
+      valueIndices = new int[n];
+      Arrays.fill(valueIndices, -1);
+
+      scored = new Constraint[n][];
+      final double[] maxAt = new double[n];
+      for (int pos = 0; pos < n; ++pos)
+      {
+         final List<Constraint> cs = new ArrayList<>();
+         for (int i = 0; i < space.checks[pos].length; ++i)
+         {
+            boolean last = true;
+            for (int other : space.checkPositions[pos][i])
+               last &= other <= pos;
+            if (!last)
+               continue;
+            cs.add(space.checks[pos][i]);
+            maxAt[pos] += space.checks[pos][i].maxScore();
+         }
+         scored[pos] = cs.toArray(new Constraint[cs.size()]);
+      }
+      boundAfter = new double[n];
+      for (int pos = n - 2; pos >= 0; --pos)
+         boundAfter[pos] = boundAfter[pos + 1] + maxAt[pos + 1];
+   }
+
+   /**
+    * The best solutions, best first (ties in no particular order).
+    */
+   List<Map<Variable, String>> solve()
+   {
+      if (k > 0)
+      {
+         if (space.size() == 0)
+            best.add(new Scored(new HashMap<>(), 0));
+         else
+            search(0, 0);
+      }
+
+      final List<Scored> sorted = new ArrayList<>(best);
+      sorted.sort(Comparator.comparingDouble((Scored s) -> s.score).reversed());
+      final List<Map<Variable, String>> solutions = new ArrayList<>();
+      for (Scored s : sorted)
+         solutions.add(s.solution);
+      return solutions;
+   }
+
+   // whether a branch that has scored so much could still make the top k
+   private boolean promising(double score)
+   {
+      return best.size() < k || score > best.peek().score;
+   }
+
+   private void search(int pos, double score)
+   {
+      final Variable var = space.vars[pos];
+      final List<String> values = space.domains.get(pos);
+
+      // score every consistent value, and try the best first
+      final List<double[]> options = new ArrayList<>();
+      for (int i = 0; i < values.size(); ++i)
+      {
+         assignment.put(var, values.get(i));
+         valueIndices[pos] = i;
+         if (!space.consistent(pos, assignment, valueIndices))
+            continue;
+         double gain = 0;
+         for (Constraint c : scored[pos])
+            gain += c.score(assignment);
+         options.add(new double[] { gain, i });
+      }
+      options.sort((a, b) -> Double.compare(b[0], a[0]));
+
+      for (double[] option : options)
+      {
+         final double newScore = score + option[0];
+         if (!promising(newScore + boundAfter[pos]))
+            break;
+         final int i = (int) option[1];
+         assignment.put(var, values.get(i));
+         valueIndices[pos] = i;
+         if (pos < space.size() - 1)
+            search(pos + 1, newScore);
+         else
+         {
+            best.add(new Scored(new HashMap<>(assignment), newScore));
+            if (best.size() > k)
+               best.poll();
+         }
+      }
+      assignment.remove(var);
+      valueIndices[pos] = -1;
+   }
+}
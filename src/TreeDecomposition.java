@@ -0,0 +1,344 @@
+/**
+ * Solves a SearchSpace by dynamic programming over a tree decomposition of
+ * its constraint graph.
+ *
+ * The decomposition comes from a greedy min-degree elimination ordering:
+ * eliminating a variable gives a bag holding it and its not-yet-eliminated
+ * neighbours, whose parent is the bag of the first of those neighbours to be
+ * eliminated after it. Every constraint's variables end up together in some
+ * bag, so each bag's table of locally consistent tuples can be computed on
+ * its own. A bottom-up pass then removes the tuples that don't agree with any
+ * tuple of some child, after which every remaining tuple extends to a
+ * solution, so solutions can be enumerated top-down without ever
+ * backtracking out of a dead end (i.e., with polynomial delay).
+ *
+ * Building the tables takes time exponential in the width (the size of the
+ * largest bag, minus one), so this is only worthwhile when it's small; trees
+ * of binary constraints have width 1.
+ *
+ * @author Mark J. Nelson
+ * @date   2026
+ */
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.HashSet;
+import java.util.TreeSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.NoSuchElementException;
+
+class TreeDecomposition
+{
+   private final SearchSpace space;
+   // the run's budget, or null if it has none
+   private SearchBudget budget = null;
+
+   // the bags, in elimination order (so children come before their parents)
+   private final List<int[]> bags = new ArrayList<>();
+   // index of each bag's parent, or -1 for roots
+   private final List<Integer> parents = new ArrayList<>();
+   // for each bag, the indices (into the bag) of the variables it shares with
+   // its parent, and the indices (into the parent) of the same variables
+   private final List<int[]> childSides = new ArrayList<>();
+   private final List<int[]> parentSides = new ArrayList<>();
+   private int width = -1;
+
+   // each bag's consistent tuples (values as domain indices, in bag order),
+   // and for non-root bags the same tuples indexed by their shared values
+   private final List<List<int[]>> tables = new ArrayList<>();
+   private final List<Map<ValueKey, List<int[]>>> indexes = new ArrayList<>();
+
+   TreeDecomposition(SearchSpace space)
+   {
+      this.space = space;
+      final int n = space.size();
+
+      // the graph that elimination fills in
+      final List<Set<Integer>> graph = new ArrayList<>();
+      for (int pos = 0; pos < n; ++pos)
+      {
+         final Set<Integer> adjacent = new TreeSet<>();
+         for (int other : space.neighbours[pos])
+            adjacent.add(other);
+         graph.add(adjacent);
+      }
+
+      final boolean[] eliminated = new boolean[n];
+      // the bag created by eliminating each variable
+      final int[] bagOf = new int[n];
+      for (int step = 0; step < n; ++step)
+      {
+         int best = -1;
+         for (int pos = 0; pos < n; ++pos)
+            if (!eliminated[pos]
+                && (best == -1 || graph.get(pos).size() < graph.get(best).size()))
+               best = pos;
+
+         final Set<Integer> neighbours = graph.get(best);
+         final int[] bag = new int[neighbours.size() + 1];
+         bag[0] = best;
+         int i = 1;
+         for (int other : neighbours)
+            bag[i++] = other;
+         bagOf[best] = bags.size();
+         bags.add(bag);
+         width = Math.max(width, bag.length - 1);
+
+         // connect up the neighbours, then remove the variable
+         for (int a : neighbours)
+         {
+            graph.get(a).addAll(neighbours);
+            graph.get(a).remove(a);
+            graph.get(a).remove(best);
+         }
+         eliminated[best] = true;
+      }
+
+      // a bag's parent is the bag of whichever of its other variables was
+      // eliminated first (i.e., the earliest bag after it that contains them)
+      for (int b = 0; b < bags.size(); ++b)
+      {
+         final int[] bag = bags.get(b);
+         int parent = -1;
+         for (int i = 1; i < bag.length; ++i)
+            if (parent == -1 || bagOf[bag[i]] < parent)
+               parent = bagOf[bag[i]];
+         parents.add(parent);
+
+         if (parent == -1)
+         {
+            childSides.add(new int[0]);
+            parentSides.add(new int[0]);
+            continue;
+         }
+         final int[] parentBag = bags.get(parent);
+         final int[] childSide = new int[bag.length - 1];
+         final int[] parentSide = new int[bag.length - 1];
+         for (int i = 1; i < bag.length; ++i)
+         {
+            childSide[i-1] = i;
+            parentSide[i-1] = indexOf(parentBag, bag[i]);
+         }
+         childSides.add(childSide);
+         parentSides.add(parentSide);
+      }
+   }
+
+   private static int indexOf(int[] array, int value)
+   {
+      for (int i = 0; i < array.length; ++i)
+         if (array[i] == value)
+            return i;
+      throw new IllegalStateException("Not a tree decomposition");
+   }
+
+   /**
+    * The width of the decomposition: the size of its largest bag, minus one.
+    */
+   int width()
+   {
+      return width;
+   }
+
+   /**
+    * Build the bag tables, and lazily enumerate the solutions.
+    *
+    * @param budget The run's budget, counting each value tried while
+    *               building the tables and each tuple picked while
+    *               enumerating as a node; may be null. If it runs out, there
+    *               are no (more) solutions.
+    */
+   Iterator<Map<Variable, String>> solutions(SearchBudget budget)
+   {
+      this.budget = budget;
+      for (int b = 0; b < bags.size(); ++b)
+         tables.add(consistentTuples(bags.get(b)));
+      if (budget != null && budget.stopped())
+         return Collections.<Map<Variable, String>>emptyIterator();
+
+      // bottom-up: keep only the tuples that agree with some tuple of each
+      // child (children come first, so they've already been reduced)
+      for (int b = 0; b < bags.size(); ++b)
+      {
+         final List<int[]> table = tables.get(b);
+         final int parent = parents.get(b);
+         if (parent == -1)
+            continue;
+
+         final Set<ValueKey> keys = new HashSet<>();
+         for (int[] tuple : table)
+            keys.add(new ValueKey(childSides.get(b), tuple));
+         final List<int[]> parentTable = tables.get(parent);
+         final List<int[]> reduced = new ArrayList<>();
+         for (int[] tuple : parentTable)
+            if (keys.contains(new ValueKey(parentSides.get(b), tuple)))
+               reduced.add(tuple);
+         tables.set(parent, reduced);
+      }
+
+      for (int b = 0; b < bags.size(); ++b)
+      {
+         final Map<ValueKey, List<int[]>> index = new HashMap<>();
+         if (parents.get(b) != -1)
+            for (int[] tuple : tables.get(b))
+               index.computeIfAbsent(new ValueKey(childSides.get(b), tuple),
+                                     k -> new ArrayList<>()).add(tuple);
+         indexes.add(index);
+      }
+
+      return new TupleIterator();
+   }
+
+   // find all the tuples of values for a bag's variables that satisfy the
+   // constraints among them
+   private List<int[]> consistentTuples(int[] bag)
+   {
+      final List<int[]> tuples = new ArrayList<>();
+      final Map<Variable, String> assignment = new HashMap<>();
+      final int[] valueIndices = new int[space.size()];
+      Arrays.fill(valueIndices, -1);
+
+      // a little backtracking search over just this bag; constraints to
+      // variables outside the bag pass, since they're unassigned
+      int depth = 0;
+      while (depth >= 0)
+      {
+         final int pos = bag[depth];
+         final Variable var = space.vars[pos];
+         final List<String> values = space.domains.get(pos);
+         final int i = valueIndices[pos] + 1;
+         if (i >= values.size())
+         {
+            assignment.remove(var);
+            valueIndices[pos] = -1;
+            --depth;
+            continue;
+         }
+         if (budget != null && !budget.node())
+            break;
+         assignment.put(var, values.get(i));
+         valueIndices[pos] = i;
+         if (!space.consistent(pos, assignment, valueIndices))
+            continue;
+         if (depth < bag.length - 1)
+         {
+            ++depth;
+            continue;
+         }
+         final int[] tuple = new int[bag.length];
+         for (int j = 0; j < bag.length; ++j)
+            tuple[j] = valueIndices[bag[j]];
+         tuples.add(tuple);
+      }
+      return tuples;
+   }
+
+   // enumerates solutions by picking a tuple for each bag top-down (parents
+   // before children), from those that agree with the parent's pick
+   private class TupleIterator
+      implements Iterator<Map<Variable, String>>
+   {
+      // bags in top-down order
+      private final int[] order = new int[bags.size()];
+      // the tuples each bag can pick from given its parent's pick, and the
+      // index of its current pick
+      private final List<List<int[]>> choices = new ArrayList<>();
+      private final int[] picks = new int[bags.size()];
+      // each bag's currently picked tuple
+      private final int[][] picked = new int[bags.size()][];
+      // the index in order of the bag being picked; -1 once finished
+      private int depth = 0;
+      private Map<Variable, String> nextSolution = null;
+
+      TupleIterator()
+      {
+         for (int i = 0; i < order.length; ++i)
+         {
+            order[i] = order.length - 1 - i;
+            choices.add(null);
+         }
+         // after the bottom-up pass, an empty table means an empty root
+         boolean empty = order.length == 0;
+         for (List<int[]> table : tables)
+            empty |= table.isEmpty();
+         if (empty)
+            depth = -1;
+         else
+         {
+            choices.set(0, candidates(order[0]));
+            picks[0] = -1;
+         }
+      }
+
+      // the tuples a bag can pick from, given its parent's current pick
+      private List<int[]> candidates(int b)
+      {
+         final int parent = parents.get(b);
+         if (parent == -1)
+            return tables.get(b);
+         return indexes.get(b).getOrDefault(new ValueKey(parentSides.get(b), picked[parent]),
+                                            Collections.<int[]>emptyList());
+      }
+
+      public boolean hasNext()
+      {
+         if (nextSolution == null)
+            nextSolution = advance();
+         return nextSolution != null;
+      }
+
+      public Map<Variable, String> next()
+      {
+         if (!hasNext())
+            throw new NoSuchElementException();
+         final Map<Variable, String> solution = nextSolution;
+         nextSolution = null;
+         return solution;
+      }
+
+      private Map<Variable, String> advance()
+      {
+         final int last = order.length - 1;
+         while (depth >= 0)
+         {
+            final int b = order[depth];
+            final List<int[]> bagChoices = choices.get(depth);
+            final int i = picks[depth] + 1;
+            if (i >= bagChoices.size())
+            {
+               --depth;
+               continue;
+            }
+            if (budget != null && !budget.node())
+               return null;
+            picks[depth] = i;
+            picked[b] = bagChoices.get(i);
+            if (depth == last)
+               return solution();
+            ++depth;
+            choices.set(depth, candidates(order[depth]));
+            picks[depth] = -1;
+         }
+         return null;
+      }
+
+      // read off the current picks; each variable's value comes from the bag
+      // it was eliminated in
+      private Map<Variable, String> solution()
+      {
+         final Map<Variable, String> solution = new HashMap<>();
+         for (int b = 0; b < bags.size(); ++b)
+         {
+            final int pos = bags.get(b)[0];
+            final int value = picked[b][0];
+            solution.put(space.vars[pos], space.domains.get(pos).get(value));
+         }
+         return solution;
+      }
+   }
+}
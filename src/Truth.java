@@ -0,0 +1,37 @@
+/**
+ * The result of evaluating a constraint on a possibly partial assignment:
+ * definitely satisfied, definitely not satisfied, or not decided yet because
+ * it depends on variables that haven't been assigned.
+ *
+ * @author Mark J. Nelson
+ * @date   2026
+ */
+
+public enum Truth
+{
+   SAT, UNSAT, UNKNOWN;
+
+   /**
+    * Convert a definite result.
+    */
+   public static Truth of(boolean satisfied)
+   {
+      return satisfied ? SAT : UNSAT;
+   }
+
+   /**
+    * The negation: swaps SAT and UNSAT, and leaves UNKNOWN as it is.
+    */
+   public Truth not()
+   {
+      switch (this)
+      {
+         case SAT:
+            return UNSAT;
+         case UNSAT:
+            return SAT;
+         default:
+            return UNKNOWN;
+      }
+   }
+}
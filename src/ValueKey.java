@@ -0,0 +1,34 @@
+/**
+ * The values (as domain indices) of some subset of a search's variables,
+ * usable as a hash key.
+ *
+ * @author Mark J. Nelson
+ * @date   2026
+ */
+
+import java.util.Arrays;
+
+final class ValueKey
+{
+   private final int[] values;
+
+   /**
+    * The values of the variables at the given positions.
+    */
+   ValueKey(int[] positions, int[] valueIndices)
+   {
+      values = new int[positions.length];
+      for (int i = 0; i < positions.length; ++i)
+         values[i] = valueIndices[positions[i]];
+   }
+
+   public boolean equals(Object o)
+   {
+      return o instanceof ValueKey && Arrays.equals(values, ((ValueKey) o).values);
+   }
+
+   public int hashCode()
+   {
+      return Arrays.hashCode(values);
+   }
+}
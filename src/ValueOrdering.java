@@ -0,0 +1,97 @@
+/**
+ * A strategy for the order in which to try a variable's values during search.
+ *
+ * Each value gets a priority, computed once per run when the search space is
+ * set up (or, for an ImplicitDomain, only for its candidates as they come),
+ * and values are tried from highest priority to lowest (ties keep the
+ * domain's order). The order only changes which solutions are found first,
+ * not which solutions there are.
+ *
+ * @author Mark J. Nelson
+ * @date   2026
+ */
+
+public interface ValueOrdering
+{
+   /**
+    * @param support The number of values in neighbouring variables' domains
+    *                that are compatible with this one, summed over the binary
+    *                constraints: read off their compatibility matrices where
+    *                they have them (see
+    *                ConstraintSolver.setPrecomputeMatrices()), and otherwise
+    *                counted by checking each pair, except against an
+    *                ImplicitDomain; 0 if usesSupport() is false.
+    * @return How early to try the value; higher is earlier.
+    */
+   double priority(Variable var, String value, int support);
+
+   /**
+    * Whether priority() looks at its support argument. Counting support
+    * without matrices costs about as much as building them, so orderings
+    * that don't need it should say so.
+    */
+   default boolean usesSupport()
+   {
+      return true;
+   }
+
+   /** Try values in the order they're listed in the domain. */
+   ValueOrdering DOMAIN_ORDER = new ValueOrdering()
+   {
+      public double priority(Variable var, String value, int support)
+      {
+         return 0;
+      }
+
+      public boolean usesSupport()
+      {
+         return false;
+      }
+   };
+
+   /**
+    * Least-constraining value first: try the values that leave the most
+    * options open for the neighbouring variables first.
+    */
+   ValueOrdering LEAST_CONSTRAINING = (var, value, support) -> support;
+
+   /**
+    * Try the values with the most ConceptNet links first, since they're the
+    * most likely to satisfy ConceptNet constraints.
+    */
+   static ValueOrdering conceptNetDegree()
+   {
+      final ConceptNet conceptNet = GlobalData.getInstance().conceptNet;
+      return withoutSupport((var, value, support) -> conceptNet.degree(value));
+   }
+
+   /**
+    * Try the values whose ConceptNet links have the highest total frequency
+    * score first.
+    */
+   static ValueOrdering conceptNetFrequency()
+   {
+      final ConceptNet conceptNet = GlobalData.getInstance().conceptNet;
+      return withoutSupport((var, value, support) -> conceptNet.totalScore(value));
+   }
+
+   /**
+    * An ordering that ignores its support argument, marked as not using it
+    * (see usesSupport()), so it isn't counted for it.
+    */
+   static ValueOrdering withoutSupport(ValueOrdering ordering)
+   {
+      return new ValueOrdering()
+      {
+         public double priority(Variable var, String value, int support)
+         {
+            return ordering.priority(var, value, support);
+         }
+
+         public boolean usesSupport()
+         {
+            return false;
+         }
+      };
+   }
+}
@@ -17,7 +17,8 @@ public class Variable
    /** Possible values this variable can take on.
     *
     * Can be null, in which case the solver should use a default set of
-    * possible values for this type.
+    * possible values for this type. Can also be an ImplicitDomain, e.g. all
+    * WordNet nouns, which is never copied out into a list of its values.
     */
    public List<String> values;
    
@@ -34,12 +35,26 @@ public class Variable
 
    /**
     * Instantiate the variable with a list of the possible values it can take on.
+    *
+    * An ImplicitDomain is kept as it is rather than copied.
     */
    public Variable(String name_, String type_, Collection<String> values_)
    {
       name = name_;
       type = type_;
-      values = new ArrayList(values_);
+      if (values_ instanceof ImplicitDomain)
+         values = (ImplicitDomain) values_;
+      else
+         values = new ArrayList(values_);
+   }
+
+   /**
+    * Instantiate the variable with an implicit domain, given by its spec
+    * (see ImplicitDomain), e.g. "noun:*" or "hyponyms:animal".
+    */
+   public Variable(String name_, String type_, String domainSpec)
+   {
+      this(name_, type_, ImplicitDomain.parse(domainSpec));
    }
 
    public String toString()
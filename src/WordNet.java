@@ -4,6 +4,9 @@
   * Note that when looking up words with multiple meanings, the first sense
   * (first synset) for the specified part of speech is always used.
   *
+  * JWI's dictionary isn't thread-safe (even a lookup updates its cache), so
+  * the lookups are synchronized, and parallel searches can share one.
+  *
   * @author Mark J. Nelson
   * @date   2007,2017-2018
   */
@@ -17,6 +20,7 @@ import edu.mit.jwi.morph.WordnetStemmer;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Set;
+import java.util.Iterator;
 import java.io.File;
 import java.io.IOException;
 
@@ -40,11 +44,23 @@ public class WordNet
    /**
     * Check if a word exists in WordNet.
     */
-   public boolean isWord(POS pos, String word)
+   public synchronized boolean isWord(POS pos, String word)
    {
       return dictionary.getIndexWord(word, pos) != null;
    }
 
+   /**
+    * Get every word WordNet has for a part of speech.
+    */
+   public synchronized List<String> getWords(POS pos)
+   {
+      List<String> words = new ArrayList<>();
+      Iterator<IIndexWord> it = dictionary.getIndexWordIterator(pos);
+      while (it.hasNext())
+         words.add(it.next().getLemma());
+      return words;
+   }
+
    /* Get the first/primary synset of a word (internal function) */
    private ISynset getSynset(POS pos, String word)
    {
@@ -61,7 +77,7 @@ public class WordNet
      * Note that this is faster than calling getHypernyms and then checking for
      * presence in that list.
      */
-   public boolean isHypernym(POS pos1, String word1, POS pos2, String word2)
+   public synchronized boolean isHypernym(POS pos1, String word1, POS pos2, String word2)
    {
       ISynset syn1 = getSynset(pos1, word1);
       ISynset syn2 = getSynset(pos2, word2);
@@ -81,7 +97,7 @@ public class WordNet
    /**
      * Get all the hypernyms of a word (including inherited ones).
      */
-   public List<String> getHypernyms(POS pos, String word)
+   public synchronized List<String> getHypernyms(POS pos, String word)
    {
       List<String> hypernyms = new ArrayList<>();
       List<ISynset> hyps = getHypernyms(getSynset(pos, word));
@@ -110,7 +126,7 @@ public class WordNet
    /**
      * Get all the hyponyms of a word (including inherited ones).
      */
-   public List<String> getHyponyms(POS pos, String word)
+   public synchronized List<String> getHyponyms(POS pos, String word)
    {
       // TODO: this is structurally identical to getHypernyms, factor out
       List<String> hyponyms = new ArrayList<>();
@@ -141,7 +157,7 @@ public class WordNet
      * Find the distance between two words of the same part-of-speech,
      * according to hypernymy/hyponymy relationships.
      */
-   public int wordDistance(String word1, String word2, POS pos, int maxHops)
+   public synchronized int wordDistance(String word1, String word2, POS pos, int maxHops)
    {
       /* Note: This uses a somewhat inefficient alg: we just recurse both
        * up and down with noun1 while leaving noun2 in the same place,
@@ -196,7 +212,7 @@ public class WordNet
     *
     * @return The closest noun, or null if none found within maxHops hops.
     */
-   public String closestNounInSet(String query, Set<String> set, int maxHops)
+   public synchronized String closestNounInSet(String query, Set<String> set, int maxHops)
    {
       /* Note: This uses a somewhat inefficient double-layered recursive alg,
        * and doesn't avoid visiting nodes multiple times, but it's "fast
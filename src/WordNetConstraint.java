@@ -15,6 +15,9 @@
 import java.util.Map;
 import java.util.Set;
 import java.util.HashSet;
+import java.util.List;
+import java.util.BitSet;
+import java.util.concurrent.ConcurrentHashMap;
 import edu.mit.jwi.item.POS;
 
 public class WordNetConstraint
@@ -26,6 +29,10 @@ public class WordNetConstraint
 
    private WordNet wordNet = GlobalData.getInstance().wordNet;
 
+   // the hypernyms and hyponyms of the known ends filter() has seen
+   private Map<String, Set<String>> hypernymClosures = new ConcurrentHashMap<>();
+   private Map<String, Set<String>> hyponymClosures = new ConcurrentHashMap<>();
+
    private Set<Variable> relVars = new HashSet<>();
 
    /**
@@ -91,6 +98,52 @@ public class WordNetConstraint
       return wordNet.isHypernym(pos, targetString, pos, sourceString);
    }
 
+   // one closure of the known end (all its hypernyms or hyponyms), marking
+   // the values in it; only those are then checked, since the closure has
+   // every word of each synset but check() only goes by a word's first sense
+   public BitSet filter(Variable var, List<String> domain, BitSet values,
+         Map<Variable, String> assignment)
+   {
+      if (source == target || (var != source && var != target))
+         return super.filter(var, domain, values, assignment);
+      final String known = var == source
+         ? (target == null ? targetLiteral : assignment.get(target))
+         : (source == null ? sourceLiteral : assignment.get(source));
+      // if the other end hasn't been assigned yet, everything passes for now
+      if (known == null)
+         return (BitSet) values.clone();
+
+      String posString = source != null ? source.type : target.type;
+      POS pos = posString.equals("noun") ? POS.NOUN : POS.VERB;
+      if (!wordNet.isWord(pos, known))
+         return super.filter(var, domain, values, assignment);
+
+      // var's value has to be above the known end if it's the source of a
+      // hypernym constraint or the target of a hyponym one, else below it
+      final boolean above = (var == source) == hypernym;
+      final Set<String> closure = (above ? hypernymClosures : hyponymClosures)
+         .computeIfAbsent(known, k -> new HashSet<>(above ? wordNet.getHypernyms(pos, k)
+                                                         : wordNet.getHyponyms(pos, k)));
+
+      final BitSet hits = new BitSet();
+      if (domain instanceof ImplicitDomain)
+      {
+         for (String value : closure)
+         {
+            final int i = domain.indexOf(value);
+            if (i >= 0 && values.get(i))
+               hits.set(i);
+         }
+      }
+      else
+      {
+         for (int i = values.nextSetBit(0); i >= 0; i = values.nextSetBit(i + 1))
+            if (closure.contains(domain.get(i)))
+               hits.set(i);
+      }
+      return super.filter(var, domain, hits, assignment);
+   }
+
    public String howSatisfied(Variable var, Map<Variable, String> assignment)
    {
       final String sourceString = source == null ? sourceLiteral : assignment.get(source);
@@ -19,6 +19,7 @@ import java.util.Map;
 import java.util.HashMap;
 import java.util.Collections;
 import java.util.Random;
+import java.util.concurrent.ExecutionException;
 import java.io.File;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
@@ -46,6 +47,11 @@ public class gui
        { "PrerequisiteEventOf", "SubeventOf", "FirstSubeventOf", "LastSubeventOf" },
        { "ConceptuallyRelatedTo", "ThematicKLine", "SuperThematicKLine" }};
    static final String[] varTypes = { "noun", "verb" };
+   // how long "Show possible assignments" searches before showing what it
+   // has, in milliseconds
+   static final long GENERATE_TIME_LIMIT = 10 * 1000;
+   // and how long "Explain why there are no assignments" does
+   static final long EXPLAIN_TIME_LIMIT = 30 * 1000;
 
    static DefaultGraphModel model = new DefaultGraphModel();
    static JGraph graph = new JGraph(model, new CustomMarqueeHandler());
@@ -53,6 +59,8 @@ public class gui
    static ConstraintSolver solver = new ConstraintSolver();
    static final JFileChooser fc = new JFileChooser();
    static Map<Object, DefaultGraphCell> userObjectToCell = new HashMap<>();
+   // constraint cells highlighted by "Explain why there are no assignments"
+   static final List<DefaultGraphCell> highlighted = new ArrayList<>();
    static final Random random = new Random();
 
    public static void main(String[] args)
@@ -418,54 +426,17 @@ public class gui
       menu.add(new AbstractAction("Show possible assignments") {
          public void actionPerformed(ActionEvent e) {
 
-            // TODO: don't hardcode '10'
-            final List<Map<Variable, String>> assignments = solver.generate(10);
-
-            final List<Variable> vars = solver.getVariables();
-            final int numVars = vars.size();
-            final int numAssignments = assignments.size();
-
-            Object[][] data = new Object[numAssignments][numVars];
-            for (int g = 0; g < numAssignments; ++g)
-            {
-               final Map<Variable, String> assignment = assignments.get(g);
-               for (int v = 0; v < numVars; ++v)
-                  data[g][v] = assignment.get(vars.get(v));
-            }
-            String[] varNames = new String[numVars];
-            for (int v = 0; v < numVars; ++v)
-               varNames[v] = vars.get(v).name;
-
-            final TableModel tableModel = new DefaultTableModel(data, varNames);
-            final JTable table = new JTable(tableModel);
-            final JScrollPane scrollPane = new JScrollPane(table);
-            final JButton whyButton = new JButton("Why?");
-            final JPanel panel = new JPanel();
-            // TODO: better sizing
-            panel.setPreferredSize(new Dimension(425, 185));
-            scrollPane.setPreferredSize(new Dimension(300, 185));
-            table.setPreferredSize(new Dimension(250, 185));
-            panel.add(scrollPane);
-            panel.add(whyButton);
-
-            whyButton.addActionListener(new AbstractAction("Why?") {
-               public void actionPerformed(ActionEvent e) {
-                  final int col = table.getSelectedColumn();
-                  final int row = table.getSelectedRow();
-                  if (col != -1 && row != -1)
-                  {
-                     final Variable var = vars.get(col);
-                     final Map<Variable, String> assignment = assignments.get(row);
-                     String howSatisfied[] = solver.howSatisfied(var, assignment);
-
-                     JOptionPane.showMessageDialog(panel, howSatisfied, "Why?",
-                                                   JOptionPane.PLAIN_MESSAGE);
-                  }
+            // TODO: don't hardcode '10', or the time limit
+            final SolveOptions options = new SolveOptions();
+            options.setTimeLimit(GENERATE_TIME_LIMIT);
+            new BackgroundSearch<SolveResult>(options) {
+               protected SolveResult doInBackground() {
+                  return solver.generate(10, options);
                }
-            });
-
-            JOptionPane.showMessageDialog(frame, panel, "Variable assignments",
-                                          JOptionPane.PLAIN_MESSAGE);
+               protected void show(SolveResult result) {
+                  showAssignments(result);
+               }
+            }.start();
          }
       });
 
@@ -501,9 +472,189 @@ public class gui
          }
       });
 
+      menu.add(new AbstractAction("Explain why there are no assignments") {
+         public void actionPerformed(ActionEvent e) {
+            final SolveOptions options = new SolveOptions();
+            options.setTimeLimit(EXPLAIN_TIME_LIMIT);
+            new BackgroundSearch<List<Constraint>>(options) {
+               protected List<Constraint> doInBackground() {
+                  return solver.explainConflict(options);
+               }
+               protected void show(List<Constraint> conflict) {
+                  showConflict(conflict, options.getStopReason());
+               }
+            }.start();
+         }
+      });
+
       menu.show(graph, point.x, point.y);
    }
 
+   /* show the assignments a search found in a table, with a button to
+    * explain a value of one */
+   private static void showAssignments(SolveResult result)
+   {
+      final List<Map<Variable, String>> assignments = result.getSolutions();
+
+      final List<Variable> vars = solver.getVariables();
+      final int numVars = vars.size();
+      final int numAssignments = assignments.size();
+
+      Object[][] data = new Object[numAssignments][numVars];
+      for (int g = 0; g < numAssignments; ++g)
+      {
+         final Map<Variable, String> assignment = assignments.get(g);
+         for (int v = 0; v < numVars; ++v)
+            data[g][v] = assignment.get(vars.get(v));
+      }
+      String[] varNames = new String[numVars];
+      for (int v = 0; v < numVars; ++v)
+         varNames[v] = vars.get(v).name;
+
+      final TableModel tableModel = new DefaultTableModel(data, varNames);
+      final JTable table = new JTable(tableModel);
+      final JScrollPane scrollPane = new JScrollPane(table);
+      final JButton whyButton = new JButton("Why?");
+      final JPanel panel = new JPanel();
+      // TODO: better sizing
+      panel.setPreferredSize(new Dimension(425, 185));
+      scrollPane.setPreferredSize(new Dimension(300, 185));
+      table.setPreferredSize(new Dimension(250, 185));
+      panel.add(scrollPane);
+      panel.add(whyButton);
+
+      whyButton.addActionListener(new AbstractAction("Why?") {
+         public void actionPerformed(ActionEvent e) {
+            final int col = table.getSelectedColumn();
+            final int row = table.getSelectedRow();
+            if (col != -1 && row != -1)
+            {
+               final Variable var = vars.get(col);
+               final Map<Variable, String> assignment = assignments.get(row);
+               String howSatisfied[] = solver.howSatisfied(var, assignment);
+
+               JOptionPane.showMessageDialog(panel, howSatisfied, "Why?",
+                                             JOptionPane.PLAIN_MESSAGE);
+            }
+         }
+      });
+
+      final String title = result.isPartial()
+         ? "Variable assignments (search stopped: " + result.getStatus() + ")"
+         : "Variable assignments";
+      JOptionPane.showMessageDialog(frame, panel, title,
+                                    JOptionPane.PLAIN_MESSAGE);
+   }
+
+   /* highlight the constraints explainConflict() found, and list them;
+    * stopReason is why it stopped early, or null if it didn't */
+   private static void showConflict(List<Constraint> conflict, SolveResult.Status stopReason)
+   {
+      highlightConstraints(conflict != null ? conflict : new ArrayList<Constraint>());
+
+      String message;
+      if (conflict == null && stopReason != null)
+         message = "Couldn't tell whether there are possible assignments (search stopped: "
+                   + stopReason + ")";
+      else if (conflict == null)
+         message = "There are possible assignments";
+      else if (conflict.isEmpty())
+         message = "Some variable has no possible values";
+      else
+      {
+         message = "These constraints can't all be met together (highlighted in red):\n";
+         for (Constraint c : conflict)
+            message += c.toString() + "\n";
+         if (stopReason != null)
+            message += "(search stopped: " + stopReason + ", so not all of them may be needed)\n";
+      }
+      JOptionPane.showMessageDialog(frame, message, "Conflict",
+                                    JOptionPane.PLAIN_MESSAGE);
+   }
+
+   /* a search run on a background thread while a dialog with a Cancel
+    * button (which cancels its options, so it stops with what it has so
+    * far) is shown; the dialog is modal, so the constraints can't be
+    * edited mid-search, and the result is shown once it's done */
+   private static abstract class BackgroundSearch<T>
+      extends SwingWorker<T, Void>
+   {
+      private final JDialog dialog = new JDialog(frame, "Searching", true);
+
+      BackgroundSearch(final SolveOptions options)
+      {
+         final JButton cancelButton = new JButton("Cancel");
+         cancelButton.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+               options.cancel();
+               cancelButton.setEnabled(false);
+            }
+         });
+         final JPanel panel = new JPanel();
+         panel.add(new JLabel("Searching..."));
+         panel.add(cancelButton);
+         dialog.getContentPane().add(panel);
+         dialog.setDefaultCloseOperation(JDialog.DO_NOTHING_ON_CLOSE);
+         dialog.pack();
+         dialog.setLocationRelativeTo(frame);
+      }
+
+      /* show the result, on the event dispatch thread */
+      protected abstract void show(T result);
+
+      /* start the search, and block input until it's done */
+      void start()
+      {
+         execute();
+         dialog.setVisible(true);
+      }
+
+      protected void done()
+      {
+         dialog.dispose();
+         try
+         {
+            show(get());
+         }
+         catch (InterruptedException e)
+         {
+            Thread.currentThread().interrupt();
+            JOptionPane.showMessageDialog(frame, "The search was interrupted",
+                                          "Error", JOptionPane.ERROR_MESSAGE);
+         }
+         catch (ExecutionException e)
+         {
+            final Throwable cause = e.getCause() != null ? e.getCause() : e;
+            JOptionPane.showMessageDialog(frame, "The search failed: " + cause,
+                                          "Error", JOptionPane.ERROR_MESSAGE);
+         }
+      }
+   }
+
+   /* outline the given constraints' cells in red, and un-outline the ones
+    * highlighted last time */
+   private static void highlightConstraints(List<Constraint> constraints)
+   {
+      for (DefaultGraphCell cell : highlighted)
+      {
+         AttributeMap att = new AttributeMap();
+         GraphConstants.setRemoveAttributes(att, new Object[] { GraphConstants.BORDER });
+         graph.getGraphLayoutCache().editCell(cell, att);
+      }
+      highlighted.clear();
+
+      for (Constraint c : constraints)
+      {
+         final DefaultGraphCell cell = userObjectToCell.get(c);
+         if (cell == null)
+            continue;
+         AttributeMap att = new AttributeMap();
+         GraphConstants.setBorder(att, BorderFactory.createLineBorder(Color.red, 2));
+         graph.getGraphLayoutCache().editCell(cell, att);
+         highlighted.add(cell);
+      }
+   }
+
    /* load a saved constraint graph */
    private static void loadGraph(File file)
    {
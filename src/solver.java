@@ -1,8 +1,8 @@
 /**
  * Command-line constraint-solver interface.
  *
- * Specify a constraint file and maximum number of solutions, and it outputs
- * them to the standard output.
+ * Specify a constraint file and maximum number of solutions, and optionally
+ * a time limit in seconds, and it outputs them to the standard output.
  *
  * @author Mark J. Nelson
  * @date   2008,2018
@@ -12,6 +12,7 @@ import java.util.List;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Map;
+import java.util.Iterator;
 
 public class solver
 {
@@ -19,18 +20,31 @@ public class solver
    {
       try
       {
-         if (args.length != 2)
+         if (args.length != 2 && args.length != 3)
          {
-            System.err.println("Usage: java -jar solver.jar constraintFilename maxSolutions");
+            System.err.println("Usage: java -jar solver.jar constraintFilename maxSolutions [timeLimitSeconds]");
             return;
          }
 
          ConstraintSolver solver = new ConstraintSolver(args[0]);
+         final int maxSolutions = Integer.valueOf(args[1]);
 
-         List<Map<Variable, String>> assignments = solver.generate(Integer.valueOf(args[1]));
+         // with a time limit, report how the search is going, since it may
+         // be a while before it finds anything
+         final SolveOptions options = new SolveOptions();
+         if (args.length == 3)
+         {
+            options.setTimeLimit(Long.valueOf(args[2]) * 1000);
+            options.setProgressListener((nodes, solutions) ->
+               System.err.println("Searched " + nodes + " nodes, found " + solutions + " solutions"));
+         }
 
-         for (Map<Variable, String> assignment : assignments)
+         // print each assignment as soon as it's found, rather than waiting
+         // for all of them
+         final Iterator<Map<Variable, String>> assignments = solver.solutions(options);
+         for (int n = 0; n < maxSolutions && assignments.hasNext(); ++n)
          {
+            final Map<Variable, String> assignment = assignments.next();
             for (Map.Entry<Variable, String> e : assignment.entrySet())
                System.out.println(e.getKey().name + ": " + e.getValue());
 
@@ -47,6 +61,9 @@ public class solver
             System.out.println("---");
             System.out.println();
          }
+
+         if (options.getStopReason() != null)
+            System.err.println("Stopped early (" + options.getStopReason() + ")");
       }
       catch (Exception e)
       {